@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A pool of worker threads, kept for the life of the session, for work that
+ * a function can spread across processors. Obtain it from the
+ * {@link Session} by calling {@link Session#getExecutor getExecutor}.
+ *<p>
+ * PostgreSQL itself is single-threaded. The workers should not use the
+ * default connection directly. Instead, a worker passes such work to
+ * {@link #submitToBackend submitToBackend}, and the task is run on the
+ * backend's own thread. The backend thread runs the tasks queued for it
+ * while it waits for one of this executor's tasks: in {@code get} on a
+ * {@code Future} returned by {@code submit}, in {@code invokeAll}, or in
+ * {@code awaitTermination}. It also runs them when it calls
+ * {@link #runBackendTasks runBackendTasks}. A function should wait for its
+ * workers before it returns. A task still queued for the backend then waits
+ * until some later call to a function waits on this executor.
+ *<p>
+ * {@code invokeAny} does not run the backend tasks while it waits, and
+ * should not be used from the backend thread with tasks that call
+ * {@code submitToBackend}.
+ */
+public interface BackendExecutor extends ExecutorService
+{
+	/**
+	 * Arrange for <em>task</em> to be run on the backend thread, where it
+	 * may use the default connection. Called on the backend thread, this
+	 * runs the task at once.
+	 * @param task The work to do on the backend thread.
+	 * @return A {@code Future} that completes when the backend thread has
+	 * run the task.
+	 */
+	<T> Future<T> submitToBackend(Callable<T> task);
+
+	/**
+	 * Run any tasks queued by {@link #submitToBackend submitToBackend},
+	 * returning when none is left. This method must be called on the backend
+	 * thread.
+	 * @throws IllegalStateException if called on another thread.
+	 */
+	void runBackendTasks();
+}
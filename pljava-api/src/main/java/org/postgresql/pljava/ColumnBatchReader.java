@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava;
+
+import java.sql.SQLException;
+
+/**
+ * Column-at-a-time access to the rows of a query result, obtained from a
+ * {@link java.sql.ResultSet ResultSet} of PL/Java's internal connection by
+ * {@code unwrap(ColumnBatchReader.class)}.
+ *<p>
+ * Each call of {@link #nextBatch} fetches the next batch of rows, of the
+ * result set's fetch size, and converts them in one pass in native code into
+ * one Java array per column. The arrays of a batch are created fresh, and
+ * remain valid and unchanged after the next batch is fetched.
+ *<p>
+ * The Java form of a column depends on its PostgreSQL type:
+ *<table>
+ *<caption>Java forms of result columns</caption>
+ *<tr><th>PostgreSQL type</th><th>Method</th><th>Form</th></tr>
+ *<tr><td>{@code boolean}, {@code smallint}, {@code integer}</td>
+ *<td>{@link #getIntColumn}</td>
+ *<td>one {@code int} per row ({@code boolean} as 0 or 1)</td></tr>
+ *<tr><td>{@code bigint}</td>
+ *<td>{@link #getLongColumn}</td><td>one {@code long} per row</td></tr>
+ *<tr><td>{@code real}, {@code double precision}</td>
+ *<td>{@link #getDoubleColumn}</td><td>one {@code double} per row</td></tr>
+ *<tr><td>{@code bytea}, {@code text}, {@code varchar}</td>
+ *<td>{@link #getBytesColumn}, {@link #getBytesOffsets}</td>
+ *<td>the value's bytes, in the server encoding for the character types</td>
+ *</tr>
+ *<tr><td>any other type</td>
+ *<td>{@link #getBytesColumn}, {@link #getBytesOffsets}</td>
+ *<td>the bytes of the value's text form, in the server encoding</td></tr>
+ *</table>
+ *<p>
+ * The bytes of a column are in a single array for the whole batch; the bytes
+ * of row <em>r</em> (counting from zero) begin at offset
+ * {@code getBytesOffsets(c)[r]} and end before
+ * {@code getBytesOffsets(c)[r+1]}.
+ *<p>
+ * A null value reads as zero, or as no bytes, in the arrays above; whether a
+ * row's value is null is found with {@link #isNull} or
+ * {@link #getNullBitmap}.
+ *<p>
+ * Once rows of a result set have been read with
+ * {@link java.sql.ResultSet#next next}, it cannot be read in batches, or the
+ * other way around.
+ */
+public interface ColumnBatchReader extends AutoCloseable
+{
+	/**
+	 * Fetch the next batch of rows.
+	 * @return true if a batch was fetched, false if there are no more rows.
+	 * @throws SQLException if rows of the result set have already been read
+	 * by {@code next}, or the result set is closed.
+	 */
+	boolean nextBatch() throws SQLException;
+
+	/**
+	 * Return the number of rows in the current batch.
+	 */
+	int getBatchRowCount() throws SQLException;
+
+	/**
+	 * Return the values of an {@code int} column in the current batch.
+	 * @param columnIndex Column number, counting from one.
+	 */
+	int[] getIntColumn(int columnIndex) throws SQLException;
+
+	/**
+	 * Return the values of a {@code long} column in the current batch.
+	 * @param columnIndex Column number, counting from one.
+	 */
+	long[] getLongColumn(int columnIndex) throws SQLException;
+
+	/**
+	 * Return the values of a {@code double} column in the current batch.
+	 * @param columnIndex Column number, counting from one.
+	 */
+	double[] getDoubleColumn(int columnIndex) throws SQLException;
+
+	/**
+	 * Return the bytes of all values of a column of bytes in the current
+	 * batch.
+	 * @param columnIndex Column number, counting from one.
+	 */
+	byte[] getBytesColumn(int columnIndex) throws SQLException;
+
+	/**
+	 * Return the offsets in {@link #getBytesColumn getBytesColumn(columnIndex)}
+	 * where each row's value begins, followed by the offset of the end.
+	 * @param columnIndex Column number, counting from one.
+	 */
+	int[] getBytesOffsets(int columnIndex) throws SQLException;
+
+	/**
+	 * Return the null rows of a column in the current batch as a bitmap: row
+	 * <em>r</em> is null if bit {@code r & 63} of element {@code r >>> 6} is
+	 * set. Returns null if the column has no null rows in this batch.
+	 * @param columnIndex Column number, counting from one.
+	 */
+	long[] getNullBitmap(int columnIndex) throws SQLException;
+
+	/**
+	 * Return whether a column's value is null in a row of the current batch.
+	 * @param columnIndex Column number, counting from one.
+	 * @param row Row within the batch, counting from zero.
+	 */
+	boolean isNull(int columnIndex, int row) throws SQLException;
+
+	/**
+	 * Close the reader and the result set it reads.
+	 */
+	@Override
+	void close() throws SQLException;
+}
@@ -54,6 +54,20 @@ public interface Session
 	 */
 	ObjectPool getObjectPool(Class cls);
 
+	/**
+	 * Return the pool of prepared statements kept for this session.
+	 * @return The session's statement pool.
+	 * @since 1.6.0
+	 */
+	StatementPool getStatementPool();
+
+	/**
+	 * Return the pool of worker threads kept for this session.
+	 * @return The session's executor.
+	 * @since 1.6.0
+	 */
+	BackendExecutor getExecutor();
+
 	/**
 	 * Return the current <em>effective</em> database user name.
 	 *<p>
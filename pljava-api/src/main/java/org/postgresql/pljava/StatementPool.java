@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A pool of prepared statements on the default connection, kept for the
+ * life of the session. Obtain it from the {@link Session} by calling
+ * {@link Session#getStatementPool getStatementPool}.
+ *<p>
+ * A function that prepares the same statement on every call, and closes it
+ * before returning, can take the statement from the pool instead. Closing a
+ * pooled statement returns its plan to the pool, and the next request for the
+ * same SQL text gets a new statement with that plan already prepared. A
+ * statement not closed by the time the function returns is closed then.
+ *<p>
+ * Each statement handed out by the pool belongs to its caller only. Once
+ * closed, it is closed as any other statement is: using it again throws
+ * {@code SQLException}, and closing it again does nothing.
+ *<p>
+ * PostgreSQL replans a pooled statement's query when objects it depends on
+ * are changed, as for any saved plan. The pool is emptied when the
+ * {@code sqlj} functions that change installed jars or classpaths are used.
+ */
+public interface StatementPool
+{
+	/**
+	 * Obtain a prepared statement for <em>sql</em> from the pool, or prepare
+	 * a new one if none is idle.
+	 * @param sql The statement, as for
+	 * {@link java.sql.Connection#prepareStatement(String) prepareStatement}.
+	 * @return A prepared statement that returns to the pool when closed.
+	 */
+	PreparedStatement prepareStatement(String sql)
+	throws SQLException;
+}
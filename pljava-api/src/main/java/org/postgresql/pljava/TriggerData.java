@@ -55,6 +55,39 @@ public interface TriggerData
 	 */
 	ResultSet getOld() throws SQLException;
 
+	/**
+	 * Returns a reader over the rows of the new transition table, for a
+	 * trigger declared with {@code REFERENCING NEW TABLE AS} (for example,
+	 * with {@link org.postgresql.pljava.annotation.Trigger#tableNew tableNew}
+	 * in the {@code Trigger} annotation). The rows, as inserted or as updated
+	 * by the triggering statement, are read in batches of column arrays, so
+	 * a statement-level trigger can process any number of changed rows in
+	 * one call. The same reader is returned if this method is called again;
+	 * it is closed when the trigger function returns, if not before.
+	 * Transition tables are available in PostgreSQL 10 and later.
+	 *
+	 * @return A reader over the new transition table, or <code>null</code>
+	 *         if the trigger has none.
+	 * @throws SQLException
+	 *             if the contained native buffer has gone stale.
+	 * @since 1.6.0
+	 */
+	ColumnBatchReader getNewTable() throws SQLException;
+
+	/**
+	 * Returns a reader over the rows of the old transition table, for a
+	 * trigger declared with {@code REFERENCING OLD TABLE AS}. As for
+	 * {@link #getNewTable getNewTable}, but the rows are those deleted, or
+	 * as they were before being updated, by the triggering statement.
+	 *
+	 * @return A reader over the old transition table, or <code>null</code>
+	 *         if the trigger has none.
+	 * @throws SQLException
+	 *             if the contained native buffer has gone stale.
+	 * @since 1.6.0
+	 */
+	ColumnBatchReader getOldTable() throws SQLException;
+
 
 	/**
 	 * Returns the arguments for this trigger (as declared in the <code>CREATE TRIGGER</code>
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLData;
+import java.sql.SQLException;
+
+/**
+ * A direct encoding of a fixed-length base UDT, which PL/Java uses in place of
+ * {@link SQLData#readSQL readSQL} and {@link SQLData#writeSQL writeSQL} when
+ * the UDT class implements it.
+ *<p>
+ * The UDT class must still implement {@code SQLData}; the two interfaces are
+ * simply different ways to move the same fixed number of bytes, the
+ * {@code internalLength} of the type, between a Java object and the
+ * PostgreSQL datum. A codec reads and writes the buffer directly, sparing a
+ * call through {@code SQLInput} or {@code SQLOutput}, with its checks, per
+ * field.
+ *<p>
+ * The buffer passed to either method has the byte order PL/Java would use for
+ * {@code SQLInput} or {@code SQLOutput} on the same type, and is valid only
+ * for the duration of the call; an implementation must not keep a reference
+ * to it. A {@link java.nio.BufferOverflowException BufferOverflowException} or
+ * {@link java.nio.BufferUnderflowException BufferUnderflowException} from the
+ * buffer is reported as an error in the binary representation of the type.
+ *<p>
+ * This interface is meaningful only for a type of fixed length;
+ * {@link org.postgresql.pljava.annotation.BaseUDT @BaseUDT} reports an error
+ * at compile time if a class implementing it does not declare a positive
+ * {@code internalLength}, and PL/Java falls back to {@code SQLData} for a
+ * variable-length type.
+ */
+public interface UDTCodec
+{
+	/**
+	 * Set the state of this newly-constructed instance from the bytes of a
+	 * datum, which begin at {@code offset} in {@code src} and continue to its
+	 * limit.
+	 * @param src Buffer holding the datum; its position is unspecified, so
+	 * absolute {@code get} methods should be used.
+	 * @param offset Index in {@code src} of the first byte of the datum.
+	 */
+	void read(ByteBuffer src, int offset) throws SQLException;
+
+	/**
+	 * Write the state of this instance, as exactly the declared number of
+	 * bytes, at the current position of {@code dst}.
+	 * @param dst Buffer to receive the datum, using relative {@code put}
+	 * methods; its limit is the declared length of the type.
+	 */
+	void write(ByteBuffer dst) throws SQLException;
+}
@@ -86,6 +86,7 @@ import static javax.tools.Diagnostic.Kind;
 import org.postgresql.pljava.ResultSetHandle;
 import org.postgresql.pljava.ResultSetProvider;
 import org.postgresql.pljava.TriggerData;
+import org.postgresql.pljava.UDTCodec;
 
 import org.postgresql.pljava.annotation.Function;
 import org.postgresql.pljava.annotation.SQLAction;
@@ -181,6 +182,7 @@ class DDRProcessorImpl
 	final DeclaredType TY_SQLOUTPUT;
 	final DeclaredType TY_STRING;
 	final DeclaredType TY_TRIGGERDATA;
+	final DeclaredType TY_UDTCODEC;
 	final       NoType TY_VOID;
 	
 	// Our own annotations
@@ -259,6 +261,8 @@ class DDRProcessorImpl
 			elmu.getTypeElement( String.class.getName()));
 		TY_TRIGGERDATA = typu.getDeclaredType(
 			elmu.getTypeElement( TriggerData.class.getName()));
+		TY_UDTCODEC = typu.getDeclaredType(
+			elmu.getTypeElement( UDTCodec.class.getName()));
 		TY_VOID = typu.getNoType( TypeKind.VOID);
 
 		AN_FUNCTION    = elmu.getTypeElement( Function.class.getName());
@@ -2162,6 +2166,12 @@ hunt:	for ( ExecutableElement ee : ees )
 				msg( Kind.ERROR, tclass,
 					"A variable-length UDT must have alignment at least INT4");
 
+			if ( -1 == internalLength() &&
+				typu.isAssignable( tclass.asType(), TY_UDTCODEC) )
+				msg( Kind.ERROR, tclass,
+					"A UDT implementing UDTCodec must have a fixed " +
+					"internalLength");
+
 			if ( -1 != internalLength() && Storage.PLAIN != storage() )
 				msg( Kind.ERROR, tclass,
 					"Storage for a fixed-length UDT must be PLAIN");
@@ -2298,6 +2308,9 @@ hunt:	for ( ExecutableElement ee : ees )
 			this.addMap(Object.class, "pg_catalog.\"any\"");
 
 			this.addMap(byte[].class, "pg_catalog.bytea");
+			this.addMap(java.nio.IntBuffer.class, "pg_catalog.int4[]");
+			this.addMap(java.nio.LongBuffer.class, "pg_catalog.int8[]");
+			this.addMap(java.nio.DoubleBuffer.class, "pg_catalog.float8[]");
 
 			// (Once Java back horizon advances to 8, do these the easy way.)
 			//
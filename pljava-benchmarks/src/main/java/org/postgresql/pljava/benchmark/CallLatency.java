@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Client-side driver measuring the latency of calls into PL/Java functions in
+ * a running PostgreSQL, with the PL/Java examples jar installed.
+ *<p>
+ * Each workload is a single SQL statement, prepared once and executed
+ * repeatedly, in one transaction that is rolled back at the end. A statement
+ * with one {@code ?} parameter gets the iteration number as an {@code int}.
+ * The time for each execution, including reading all its result rows, is
+ * recorded, and the mean and percentiles are reported in microseconds.
+ *<p>
+ * Usage:
+ *<pre>
+ * java -cp benchmarks.jar org.postgresql.pljava.benchmark.CallLatency \
+ *     [-n iterations] [-w warmup] [-f workloads] jdbc-url
+ *</pre>
+ * The default workloads call a scalar function, a set-returning function,
+ * row triggers, and a function taking a scalar UDT, from the examples. A
+ * workloads file has one workload per line, as a name, a colon, and the
+ * statement; blank lines and lines beginning with {@code #} are ignored.
+ */
+public class CallLatency
+{
+	private static final String[][] DEFAULT_WORKLOADS = {
+		{ "scalar", "SELECT javatest.java_addOne(?)" },
+		{ "srf", "SELECT count(*) FROM javatest.randomInts(100)" },
+		/* a constant value; the examples reject 44, and suppress 43 */
+		{ "trigger", "INSERT INTO javatest.foobar_2(value) VALUES (1)" },
+		{ "udt",
+			"SELECT javatest.assertHasValues(" +
+			"CAST('(1,2)' AS javatest.complex), 1, 2)" }
+	};
+
+	public static void main(String[] args) throws Exception
+	{
+		int iterations = 10000;
+		int warmup = 1000;
+		String workloadFile = null;
+		String url = null;
+
+		for ( int i = 0; i < args.length; ++ i )
+		{
+			String a = args[i];
+			if ( "-n".equals(a) && i + 1 < args.length )
+				iterations = Integer.parseInt(args[++i]);
+			else if ( "-w".equals(a) && i + 1 < args.length )
+				warmup = Integer.parseInt(args[++i]);
+			else if ( "-f".equals(a) && i + 1 < args.length )
+				workloadFile = args[++i];
+			else if ( null == url && ! a.startsWith("-") )
+				url = a;
+			else
+				usage();
+		}
+		if ( null == url || 1 > iterations || 0 > warmup )
+			usage();
+
+		String[][] workloads = null == workloadFile
+			? DEFAULT_WORKLOADS : readWorkloads(workloadFile);
+
+		PrintStream out = System.out;
+		out.printf("%-12s %10s %10s %10s %10s %10s %10s%n",
+			"workload", "calls", "mean", "p50", "p90", "p99", "max");
+
+		try ( Connection c = DriverManager.getConnection(url) )
+		{
+			c.setAutoCommit(false);
+			try
+			{
+				for ( String[] w : workloads )
+				{
+					long[] nanos = run(c, w[1], warmup, iterations);
+					report(out, w[0], nanos);
+				}
+			}
+			finally
+			{
+				c.rollback();
+			}
+		}
+	}
+
+	private static void usage()
+	{
+		System.err.println("usage: CallLatency " +
+			"[-n iterations] [-w warmup] [-f workloads] jdbc-url");
+		System.exit(2);
+	}
+
+	private static String[][] readWorkloads(String file) throws IOException
+	{
+		List<String[]> workloads = new ArrayList<String[]>();
+		try ( BufferedReader r = new BufferedReader(
+			new InputStreamReader(new FileInputStream(file), UTF_8)) )
+		{
+			String line;
+			while ( null != (line = r.readLine()) )
+			{
+				line = line.trim();
+				if ( line.isEmpty() || line.startsWith("#") )
+					continue;
+				int colon = line.indexOf(':');
+				if ( 1 > colon )
+					throw new IOException(
+						"workload line lacks \"name:\": " + line);
+				workloads.add(new String[] {
+					line.substring(0, colon).trim(),
+					line.substring(colon + 1).trim() });
+			}
+		}
+		return workloads.toArray(new String[workloads.size()][]);
+	}
+
+	private static long[] run(
+		Connection c, String sql, int warmup, int iterations)
+		throws SQLException
+	{
+		long[] nanos = new long[iterations];
+		try ( PreparedStatement ps = c.prepareStatement(sql) )
+		{
+			boolean hasParam =
+				0 < ps.getParameterMetaData().getParameterCount();
+			for ( int i = 0; i < warmup; ++ i )
+				execute(ps, hasParam, i);
+			for ( int i = 0; i < iterations; ++ i )
+			{
+				long start = System.nanoTime();
+				execute(ps, hasParam, i);
+				nanos[i] = System.nanoTime() - start;
+			}
+		}
+		return nanos;
+	}
+
+	private static void execute(PreparedStatement ps, boolean hasParam, int i)
+		throws SQLException
+	{
+		if ( hasParam )
+			ps.setInt(1, i);
+		if ( ps.execute() )
+		{
+			try ( ResultSet rs = ps.getResultSet() )
+			{
+				while ( rs.next() )
+					rs.getObject(1);
+			}
+		}
+	}
+
+	private static void report(PrintStream out, String name, long[] nanos)
+	{
+		Arrays.sort(nanos);
+		long total = 0;
+		for ( long n : nanos )
+			total += n;
+		out.printf("%-12s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+			name, nanos.length,
+			total / 1e3 / nanos.length,
+			percentile(nanos, 0.50) / 1e3,
+			percentile(nanos, 0.90) / 1e3,
+			percentile(nanos, 0.99) / 1e3,
+			nanos[nanos.length - 1] / 1e3);
+	}
+
+	private static long percentile(long[] sorted, double p)
+	{
+		int idx = (int)Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, idx)];
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reading through a {@link MarkableSequenceInputStream} of several streams,
+ * as PL/Java does when presenting a value that arrives in pieces, in bulk,
+ * a byte at a time, and with a mark reset to reread a prefix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarkableSequenceInputStreamBenchmark
+{
+	@Param({"4", "32"})
+	public int streams;
+
+	@Param({"4096"})
+	public int chunkSize;
+
+	private byte[][] m_chunks;
+
+	private byte[] m_buffer;
+
+	@Setup
+	public void setup()
+	{
+		m_chunks = new byte[streams][chunkSize];
+		for ( int i = 0; i < streams; ++ i )
+			for ( int j = 0; j < chunkSize; ++ j )
+				m_chunks[i][j] = (byte)(i + j);
+		m_buffer = new byte[8192];
+	}
+
+	private InputStream open()
+	{
+		InputStream[] iss = new InputStream[m_chunks.length];
+		for ( int i = 0; i < iss.length; ++ i )
+			iss[i] = new ByteArrayInputStream(m_chunks[i]);
+		return new MarkableSequenceInputStream(iss);
+	}
+
+	@Benchmark
+	public long bulkRead() throws IOException
+	{
+		InputStream is = open();
+		long total = 0;
+		int got;
+		while ( -1 != (got = is.read(m_buffer)) )
+			total += got;
+		is.close();
+		return total;
+	}
+
+	@Benchmark
+	public long byteRead() throws IOException
+	{
+		InputStream is = open();
+		long total = 0;
+		int b;
+		while ( -1 != (b = is.read()) )
+			total += b;
+		is.close();
+		return total;
+	}
+
+	@Benchmark
+	public long markAndReset() throws IOException
+	{
+		InputStream is = open();
+		int prefix = chunkSize + chunkSize / 2; /* spans a stream boundary */
+		long total = 0;
+		is.mark(prefix);
+		total += is.read(m_buffer, 0, Math.min(prefix, m_buffer.length));
+		is.reset();
+		int got;
+		while ( -1 != (got = is.read(m_buffer)) )
+			total += got;
+		is.close();
+		return total;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building an {@link ExecutionPlan.PlanKey} for a statement about to be
+ * prepared, and finding it among the keys of the plans already cached.
+ *<p>
+ * Only the nested key class is loaded; {@code ExecutionPlan} itself needs a
+ * backend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlanKeyBenchmark
+{
+	private static final String STATEMENT =
+		"SELECT a, b FROM javatest.t WHERE a = $1 AND b = $2 AND c = $3";
+
+	private Map<Object,Object> m_plans;
+
+	private String m_stmt;
+
+	private Oid[] m_argTypes;
+
+	@Setup
+	public void setup()
+	{
+		m_plans = new HashMap<Object,Object>();
+		for ( int i = 0; i < 64; ++ i )
+		{
+			String stmt = STATEMENT + " AND d = " + i;
+			m_plans.put(new ExecutionPlan.PlanKey(stmt, argTypes()), stmt);
+		}
+		m_stmt = new String(STATEMENT + " AND d = 31");
+		m_argTypes = argTypes();
+	}
+
+	private static Oid[] argTypes()
+	{
+		return new Oid[] { new Oid(23), new Oid(25), new Oid(1700) };
+	}
+
+	@Benchmark
+	public int hashCodeOfNewKey()
+	{
+		return new ExecutionPlan.PlanKey(m_stmt, m_argTypes).hashCode();
+	}
+
+	@Benchmark
+	public Object lookup()
+	{
+		return m_plans.get(new ExecutionPlan.PlanKey(m_stmt, m_argTypes));
+	}
+}
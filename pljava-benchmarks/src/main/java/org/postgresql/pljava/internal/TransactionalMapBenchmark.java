@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Lookups and a transaction's worth of changes through a
+ * {@link TransactionalMap} over a populated backing map, as used for the
+ * session attributes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionalMapBenchmark
+{
+	private static final int SIZE = 64;
+
+	private TransactionalMap m_map;
+
+	private String[] m_keys;
+
+	@Setup
+	public void setup()
+	{
+		Map<String,Integer> base = new HashMap<String,Integer>();
+		m_keys = new String[SIZE];
+		for ( int i = 0; i < SIZE; ++ i )
+		{
+			m_keys[i] = "attribute" + i;
+			base.put(m_keys[i], i);
+		}
+		m_map = new TransactionalMap(base);
+		/* shadow one key in four, as uncommitted changes */
+		for ( int i = 0; i < SIZE; i += 4 )
+			m_map.put(m_keys[i], -i);
+	}
+
+	@Benchmark
+	public int getAll()
+	{
+		int sum = 0;
+		for ( String k : m_keys )
+			sum += (Integer)m_map.get(k);
+		return sum;
+	}
+
+	@Benchmark
+	public int changeAndAbort()
+	{
+		for ( int i = 1; i < SIZE; i += 8 )
+			m_map.put(m_keys[i], i);
+		m_map.remove(m_keys[2]);
+		int size = m_map.size();
+		m_map.abort();
+		for ( int i = 0; i < SIZE; i += 4 )
+			m_map.put(m_keys[i], -i);
+		return size;
+	}
+}
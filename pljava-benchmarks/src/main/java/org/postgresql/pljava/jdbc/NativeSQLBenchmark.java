@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The work of {@link SPIConnection#nativeSQL(String,int[]) nativeSQL}: a fresh
+ * translation of a JDBC statement, and a lookup of one already cached.
+ *<p>
+ * {@code SPIConnection} itself cannot be loaded outside of a backend, so the
+ * translation and the cache are exercised directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NativeSQLBenchmark
+{
+	private static final String STATEMENT =
+		"SELECT a, b,  c\n  FROM javatest.t\n WHERE a = ? AND b <> '?'" +
+		"   AND c BETWEEN ? AND ?";
+
+	private SQLTranslationCache m_cache;
+
+	private String m_sql;
+
+	@Setup
+	public void setup()
+	{
+		m_cache = new SQLTranslationCache(29);
+		for ( int i = 0; i < 20; ++ i )
+		{
+			String sql = STATEMENT + " AND d = " + i;
+			m_cache.put(sql, SQLTranslationCache.translate(sql));
+		}
+		/*
+		 * A distinct but equal instance, as from a statement built at run
+		 * time rather than a string constant.
+		 */
+		m_sql = new String(STATEMENT + " AND d = 7");
+	}
+
+	@Benchmark
+	public String translate()
+	{
+		return SQLTranslationCache.translate(m_sql).m_sql;
+	}
+
+	@Benchmark
+	public String cachedTranslation()
+	{
+		return m_cache.get(m_sql).m_sql;
+	}
+}
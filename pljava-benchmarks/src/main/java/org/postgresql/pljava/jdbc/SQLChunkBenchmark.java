@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.jdbc;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.postgresql.pljava.UDTCodec;
+
+/**
+ * Reading and writing a fixed-length scalar UDT of two {@code double}s (like
+ * the {@code complex} example) through {@link SQLInputFromChunk} and
+ * {@link SQLOutputToChunk}, both field by field and by {@link UDTCodec}.
+ *<p>
+ * Each operation resets, uses, and closes a reader or writer over a buffer of
+ * its own, as the native code does with its pooled instances for each value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SQLChunkBenchmark
+{
+	private static final int LENGTH = 16;
+
+	private SQLInputFromChunk m_input;
+
+	private SQLOutputToChunk m_output;
+
+	private Complex m_value;
+
+	@Setup
+	public void setup() throws SQLException
+	{
+		for ( String dir : new String[] { "p2j", "j2p" } )
+		{
+			System.setProperty(
+				"org.postgresql.pljava.udt.byteorder.scalar." + dir,
+				"big_endian");
+			System.setProperty(
+				"org.postgresql.pljava.udt.byteorder.mirror." + dir,
+				"native");
+		}
+
+		ByteBuffer in = ByteBuffer.allocateDirect(1024);
+		in.putDouble(1.5).putDouble(-2.25);
+		m_input = new SQLInputFromChunk(in, true);
+		m_output = new SQLOutputToChunk(ByteBuffer.allocateDirect(1024), true);
+		m_value = new Complex();
+		m_value.m_re = 1.5;
+		m_value.m_im = -2.25;
+	}
+
+	@Benchmark
+	public double readSQL() throws SQLException
+	{
+		m_input.reset(LENGTH);
+		double re = m_input.readDouble();
+		double im = m_input.readDouble();
+		m_input.close();
+		return re + im;
+	}
+
+	@Benchmark
+	public double readCodec() throws SQLException
+	{
+		Complex c = new Complex();
+		m_input.reset(LENGTH);
+		m_input.read(c);
+		m_input.close();
+		return c.m_re + c.m_im;
+	}
+
+	@Benchmark
+	public int writeSQL() throws SQLException
+	{
+		m_output.reset(LENGTH);
+		m_output.writeDouble(m_value.m_re);
+		m_output.writeDouble(m_value.m_im);
+		return m_output.finish();
+	}
+
+	@Benchmark
+	public int writeCodec() throws SQLException
+	{
+		m_output.reset(LENGTH);
+		m_output.write(m_value, LENGTH);
+		return m_output.finish();
+	}
+
+	static final class Complex implements UDTCodec
+	{
+		double m_re;
+		double m_im;
+
+		@Override
+		public void read(ByteBuffer src, int offset)
+		{
+			m_re = src.getDouble(offset);
+			m_im = src.getDouble(offset + 8);
+		}
+
+		@Override
+		public void write(ByteBuffer dst)
+		{
+			dst.putDouble(m_re).putDouble(m_im);
+		}
+	}
+}
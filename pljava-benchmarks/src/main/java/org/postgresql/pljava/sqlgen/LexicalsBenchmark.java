@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.sqlgen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static
+	org.postgresql.pljava.sqlgen.Lexicals.ISO_AND_PG_IDENTIFIER_CAPTURING;
+import static org.postgresql.pljava.sqlgen.Lexicals.identifierFrom;
+
+import org.postgresql.pljava.sqlgen.Lexicals.Identifier;
+
+/**
+ * Recognizing an identifier with {@link Lexicals} and making an
+ * {@link Identifier} of it, for regular, delimited, and Unicode-escaped forms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LexicalsBenchmark
+{
+	@Param({
+		"anIdentifier",
+		"\"an\"\"Identifier\"\"\"",
+		"u&\"an\\0049dent\"\"if\\+000069er\""
+	})
+	public String identifier;
+
+	private Matcher m_matcher;
+
+	@Setup
+	public void setup()
+	{
+		m_matcher = ISO_AND_PG_IDENTIFIER_CAPTURING.matcher(identifier);
+	}
+
+	@Benchmark
+	public int parse()
+	{
+		m_matcher.reset();
+		if ( ! m_matcher.matches() )
+			throw new AssertionError("no match: " + identifier);
+		return identifierFrom(m_matcher).hashCode();
+	}
+
+	@Benchmark
+	public int fromString()
+	{
+		return Identifier.from("Sopran Alt Baß", true).hashCode();
+	}
+}
@@ -19,6 +19,7 @@ import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 
+import org.postgresql.pljava.ColumnBatchReader;
 import org.postgresql.pljava.TriggerData;
 import org.postgresql.pljava.annotation.Function;
 import org.postgresql.pljava.annotation.SQLAction;
@@ -135,6 +136,31 @@ public class Triggers
 				"trigger transition table oval %d nval %d", oval, nval));
 	}
 
+	/**
+	 * Count the rows changed by an update, reading the new transition table
+	 * a batch at a time.
+	 */
+	@Function(
+		implementor = "postgresql_ge_100000",
+		requires = "foobar tables",
+		provides = "transition batch triggers",
+		schema = "javatest",
+		security = INVOKER,
+		triggers = {
+			@Trigger(called = AFTER, table = "foobar_2", events = { UPDATE },
+			         tableNew = "updatedrows" )
+		})
+
+	public static void countUpdatedRows(TriggerData td)
+	throws SQLException
+	{
+		long rows = 0;
+		ColumnBatchReader r = td.getNewTable();
+		while ( r.nextBatch() )
+			rows += r.getBatchRowCount();
+		logMessage( "INFO", "trigger transition table rows " + rows);
+	}
+
 	/**
 	 * Throw exception if value to be inserted is 44.
 	 * Constraint triggers first became available in PostgreSQL 9.1.
@@ -22,6 +22,7 @@
 #include <utils/guc.h>
 #include <fmgr.h>
 #include <access/heapam.h>
+#include <access/xact.h>
 #include <utils/syscache.h>
 #include <catalog/catalog.h>
 #include <catalog/pg_proc.h>
@@ -103,9 +104,14 @@ static char* implementors;
 static int   statementCacheSize;
 static bool  pljavaDebug;
 static bool  pljavaReleaseLingeringSavepoints;
+static bool  pljavaPrefetchClasses;
+static int   logQueueSize;
 static bool  pljavaEnabled;
 static bool  s_currentTrust;
 static int   s_javaLogLevel;
+static bool  s_javaLogQueued;
+static jclass s_ELogHandler_class;
+static jmethodID s_ELogHandler_drain;
 
 #if PG_VERSION_NUM < 100000
 bool integerDateTimes = false;
@@ -142,11 +148,13 @@ static void JVMOptList_delete(JVMOptList*);
 static void JVMOptList_add(JVMOptList*, const char*, void*, bool);
 static void JVMOptList_addVisualVMName(JVMOptList*);
 static void addUserJVMOptions(JVMOptList*);
+static void addClassArchiveOption(JVMOptList*);
 static char* getClassPath(const char*);
 static jint JNICALL my_vfprintf(FILE*, const char*, va_list);
 static void _destroyJavaVM(int, Datum);
 static void initPLJavaClasses(void);
 static void initJavaSession(void);
+static void logQueueXactCB(XactEvent event, void* arg);
 static void reLogWithChangedLevel(int);
 
 #ifndef WIN32
@@ -496,6 +504,7 @@ static void initsequencer(enum initstage is, bool tolerant)
 		JVMOptList_init(&optList); /* uses CurrentMemoryContext */
 		seenVisualVMName = false;
 		addUserJVMOptions(&optList);
+		addClassArchiveOption(&optList);
 		if ( ! seenVisualVMName )
 			JVMOptList_addVisualVMName(&optList);
 		JVMOptList_add(&optList, "vfprintf", (void*)my_vfprintf, true);
@@ -818,6 +827,11 @@ static void initPLJavaClasses(void)
 		Java_org_postgresql_pljava_internal_Backend__1clearFunctionCache
 		},
 		{
+		"_clearFunctionCacheFor",
+		"([Ljava/lang/ClassLoader;)V",
+		Java_org_postgresql_pljava_internal_Backend__1clearFunctionCacheFor
+		},
+		{
 		"_isCreatingExtension",
 		"()Z",
 		Java_org_postgresql_pljava_internal_Backend__1isCreatingExtension
@@ -1180,6 +1194,28 @@ static void JVMOptList_addVisualVMName(JVMOptList* jol)
 	JVMOptList_add(jol, buf.data, 0, false);
 }
 
+/*
+ * If sqlj.build_class_archive has been used to dump a shared class archive
+ * for the current database, and pljava.vmoptions does not name an archive
+ * already, have the JVM map the one found in the data directory.
+ */
+static void addClassArchiveOption(JVMOptList* optList)
+{
+	StringInfoData buf;
+
+	if ( ! OidIsValid(MyDatabaseId) || NULL == DataDir )
+		return;
+	if ( NULL != vmoptions && NULL != strstr(vmoptions, "-XX:SharedArchiveFile") )
+		return;
+
+	initStringInfo(&buf);
+	appendStringInfo(&buf, "-XX:SharedArchiveFile=%s/pljava/cds/%u.jsa",
+		DataDir, MyDatabaseId);
+	if ( 0 == access(strchr(buf.data, '=') + 1, R_OK) )
+		JVMOptList_add(optList, buf.data, 0, true);
+	pfree(buf.data);
+}
+
 /* Split JVM options. The string is split on whitespace unless the
  * whitespace is found within a string or is escaped by backslash. A
  * backslash escaped quote is not considered a string delimiter.
@@ -1273,6 +1309,47 @@ static void initJavaSession(void)
 			errcode(ERRCODE_INTERNAL_ERROR),
 			errmsg("Unable to initialize java session")));
 	}
+
+	/*
+	 * ELogHandler read pljava.log_queue_size during Session.init, and queues
+	 * Java log records if it was positive. Remember the same answer here, so
+	 * the queue is drained at the places it should be.
+	 */
+	s_javaLogQueued = logQueueSize > 0;
+	if(s_javaLogQueued)
+	{
+		s_ELogHandler_class = JNI_newGlobalRef(PgObject_getJavaClass(
+			"org/postgresql/pljava/internal/ELogHandler"));
+		s_ELogHandler_drain = PgObject_getStaticJavaMethod(
+			s_ELogHandler_class, "drain", "()V");
+		RegisterXactCallback(logQueueXactCB, NULL);
+	}
+}
+
+void Backend_drainJavaLog(void)
+{
+	if(s_javaLogQueued)
+		JNI_callStaticVoidMethodLocked(s_ELogHandler_class, s_ELogHandler_drain);
+}
+
+/*
+ * Drain the queue before a transaction commits or is prepared, while an error
+ * can still abort it. Nothing is called in Java at commit or abort itself;
+ * records queued in a transaction that aborts are sent at the next drain.
+ */
+static void logQueueXactCB(XactEvent event, void* arg)
+{
+	switch(event)
+	{
+#if PG_VERSION_NUM >= 90300
+		case XACT_EVENT_PRE_COMMIT:
+		case XACT_EVENT_PRE_PREPARE:
+			Backend_drainJavaLog();
+			break;
+#endif
+		default:
+			break;
+	}
 }
 
 #if PG_VERSION_NUM < 100000
@@ -1447,6 +1524,34 @@ static void registerGUCOptions(void)
 		NULL, /* check hook */
 		NULL, NULL); /* assign hook, show hook */
 
+	BOOL_GUC(
+		"pljava.prefetch_classes",
+		"If true, all class images on a schema's classpath are fetched in one "
+		"query when its class loader is created",
+		"Otherwise, each class image is fetched by its own query the first "
+		"time the class is loaded.",
+		&pljavaPrefetchClasses,
+		false, /* boot value */
+		PGC_USERSET,
+		0,    /* flags */
+		NULL, /* check hook */
+		NULL, NULL); /* assign hook, show hook */
+
+	INT_GUC(
+		"pljava.log_queue_size",
+		"Number of Java log records that can wait to be sent to the server log",
+		"If zero, each record is sent as it is logged. Otherwise, records "
+		"logged from any thread are queued and sent in batches when a Java "
+		"function returns, before SPI is used, and at transaction end. Read "
+		"once, when the Java virtual machine is started.",
+		&logQueueSize,
+		0,    /* boot value */
+		0, 65536, /* min, max values */
+		PGC_USERSET,
+		0,    /* flags */
+		NULL, /* check hook */
+		NULL, NULL); /* assign hook, show hook */
+
 	BOOL_GUC(
 		"pljava.enable",
 		"If off, the Java virtual machine will not be started until set on.",
@@ -1671,6 +1776,19 @@ Java_org_postgresql_pljava_internal_Backend__1clearFunctionCache(JNIEnv* env, jc
 	END_NATIVE
 }
 
+/*
+ * Class:     org_postgresql_pljava_internal_Backend
+ * Method:    _clearFunctionCacheFor
+ * Signature: ([Ljava/lang/ClassLoader;)V
+ */
+JNIEXPORT void JNICALL
+Java_org_postgresql_pljava_internal_Backend__1clearFunctionCacheFor(JNIEnv* env, jclass cls, jobjectArray loaders)
+{
+	BEGIN_NATIVE_NO_ERRCHECK
+	Function_clearFunctionCacheFor(loaders);
+	END_NATIVE
+}
+
 /*
  * Class:     org_postgresql_pljava_internal_Backend
  * Method:    _isCreatingExtension
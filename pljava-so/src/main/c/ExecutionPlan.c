@@ -60,6 +60,11 @@ void ExecutionPlan_initialize(void)
 		Java_org_postgresql_pljava_internal_ExecutionPlan__1execute
 		},
 		{
+		"_executeBatch",
+		"(JJ[[Ljava/lang/Object;SI)[J",
+		Java_org_postgresql_pljava_internal_ExecutionPlan__1executeBatch
+		},
+		{
 		"_prepare",
 		"(JLjava/lang/String;[Lorg/postgresql/pljava/internal/Oid;)J",
 		Java_org_postgresql_pljava_internal_ExecutionPlan__1prepare
@@ -261,6 +266,97 @@ Java_org_postgresql_pljava_internal_ExecutionPlan__1execute(JNIEnv* env, jclass
 	return result;
 }
 
+/*
+ * Class:     org_postgresql_pljava_internal_ExecutionPlan
+ * Method:    _executeBatch
+ * Signature: (JJ[[Ljava/lang/Object;SI)[J
+ *
+ * Executes the plan once for each set of parameters, returning the number of
+ * rows processed by each execution, or null with an exception pending if one
+ * of them fails. The parameters of each execution are coerced in a memory
+ * context that is reset before the next.
+ */
+JNIEXPORT jlongArray JNICALL
+Java_org_postgresql_pljava_internal_ExecutionPlan__1executeBatch(JNIEnv* env, jclass clazz, jlong _this, jlong threadId, jobjectArray jparamSets, jshort readonly_spec, jint count)
+{
+	jlongArray result = 0;
+	if(_this != 0)
+	{
+		BEGIN_NATIVE
+		STACK_BASE_VARS
+		STACK_BASE_PUSH(threadId)
+		PG_TRY();
+		{
+			Ptr2Long p2l;
+			MemoryContext paramCtx;
+			bool read_only;
+			jsize nSets = JNI_getArrayLength(jparamSets);
+			jsize idx;
+			jlong* counts = (jlong*)palloc(nSets * sizeof(jlong));
+
+			p2l.longVal = _this;
+			Invocation_assertConnect();
+			if ( SPI_READONLY_DEFAULT == readonly_spec )
+				read_only = Function_isCurrentReadOnly();
+			else
+				read_only = (SPI_READONLY_FORCED == readonly_spec);
+
+			paramCtx = AllocSetContextCreate(CurrentMemoryContext,
+				"PL/Java batch parameters",
+				ALLOCSET_DEFAULT_MINSIZE,
+				ALLOCSET_DEFAULT_INITSIZE,
+				ALLOCSET_DEFAULT_MAXSIZE);
+
+			for(idx = 0; idx < nSets; ++idx)
+			{
+				Datum* values = 0;
+				char*  nulls  = 0;
+				bool   coerced;
+				int    rc;
+				jobjectArray jvalues =
+					JNI_getObjectArrayElement(jparamSets, idx);
+				MemoryContext oldCtx = MemoryContextSwitchTo(paramCtx);
+				coerced = coerceObjects(p2l.ptrVal, jvalues, &values, &nulls);
+				MemoryContextSwitchTo(oldCtx);
+				JNI_deleteLocalRef(jvalues);
+				if(!coerced)
+					break;
+
+				rc = SPI_execute_plan(
+					p2l.ptrVal, values, nulls, read_only, (int)count);
+				if(rc < 0)
+				{
+					Exception_throwSPI("execute_plan", rc);
+					break;
+				}
+				counts[idx] = (jlong)SPI_processed;
+				if(SPI_tuptable != 0)
+				{
+					SPI_freetuptable(SPI_tuptable);
+					SPI_tuptable = 0;
+				}
+				MemoryContextReset(paramCtx);
+			}
+
+			if(idx == nSets)
+			{
+				result = JNI_newLongArray(nSets);
+				JNI_setLongArrayRegion(result, 0, nSets, counts);
+			}
+			MemoryContextDelete(paramCtx);
+			pfree(counts);
+		}
+		PG_CATCH();
+		{
+			Exception_throw_ERROR("SPI_execute_plan");
+		}
+		PG_END_TRY();
+		STACK_BASE_POP()
+		END_NATIVE
+	}
+	return result;
+}
+
 /*
  * Class:     org_postgresql_pljava_internal_ExecutionPlan
  * Method:    _prepare
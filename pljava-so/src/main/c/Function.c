@@ -165,7 +165,7 @@ void Function_initialize(void)
 	
 	s_Loader_class = JNI_newGlobalRef(PgObject_getJavaClass("org/postgresql/pljava/sqlj/Loader"));
 	s_Loader_getSchemaLoader = PgObject_getStaticJavaMethod(s_Loader_class, "getSchemaLoader", "(Ljava/lang/String;)Ljava/lang/ClassLoader;");
-	s_Loader_getTypeMap = PgObject_getStaticJavaMethod(s_Loader_class, "getTypeMap", "(Ljava/lang/String;)Ljava/util/Map;");
+	s_Loader_getTypeMap = PgObject_getStaticJavaMethod(s_Loader_class, "getTypeMap", "(Ljava/lang/String;)Lorg/postgresql/pljava/sqlj/TypeMap;");
 
 	s_ClassLoader_class = JNI_newGlobalRef(PgObject_getJavaClass("java/lang/ClassLoader"));
 	s_ClassLoader_loadClass = PgObject_getJavaMethod(s_ClassLoader_class, "loadClass", "(Ljava/lang/String;)Ljava/lang/Class;");
@@ -757,22 +757,58 @@ static bool Function_inUse(Function func)
 }
 
 void Function_clearFunctionCache(void)
+{
+	Function_clearFunctionCacheFor(0);
+}
+
+/*
+ * True if the function's class came from one of the nloaders loaders, or from
+ * a loader that has since been collected.
+ */
+static bool loadedByAny(Function func, jobject* loaders, jsize nloaders)
+{
+	jsize idx;
+
+	if(func->schemaLoader == 0)
+		return false;
+	if(JNI_isSameObject(func->schemaLoader, 0))
+		return true;
+	for(idx = 0; idx < nloaders; ++idx)
+		if(JNI_isSameObject(func->schemaLoader, loaders[idx]))
+			return true;
+	return false;
+}
+
+void Function_clearFunctionCacheFor(jobjectArray loaderArray)
 {
 	Entry entry;
+	jsize idx;
+	jsize nloaders = 0;
+	jobject* loaders = 0;
 
 	HashMap oldMap = s_funcMap;
 	Iterator itor = Iterator_create(oldMap);
 
+	if(loaderArray != 0)
+	{
+		nloaders = JNI_getArrayLength(loaderArray);
+		loaders = (jobject*)palloc((nloaders + 1) * sizeof(jobject));
+		for(idx = 0; idx < nloaders; ++idx)
+			loaders[idx] = JNI_getObjectArrayElement(loaderArray, idx);
+	}
+
 	s_funcMap = HashMap_create(59, TopMemoryContext);
 	while((entry = Iterator_next(itor)) != 0)
 	{
 		Function func = (Function)Entry_getValue(entry);
 		if(func != 0)
 		{
-			if(Function_inUse(func))
+			if(Function_inUse(func)
+			|| (loaderArray != 0 && !loadedByAny(func, loaders, nloaders)))
 			{
-				/* This is the replace_jar function or similar. Just
-				 * move it to the new map.
+				/* This is the replace_jar function or similar, or a function
+				 * whose loader is not being cleared. Just move it to the new
+				 * map.
 				 */
 				HashMap_put(s_funcMap, Entry_getKey(entry), func);
 			}
@@ -785,13 +821,28 @@ void Function_clearFunctionCache(void)
 	}
 	PgObject_free((PgObject)itor);
 	PgObject_free((PgObject)oldMap);
+
+	if(loaders != 0)
+	{
+		for(idx = 0; idx < nloaders; ++idx)
+			JNI_deleteLocalRef(loaders[idx]);
+		pfree(loaders);
+	}
 }
 
+/*
+ * Functions with no more than this many parameters get their argument array
+ * on the stack rather than from palloc. Function_invoke runs once per row of
+ * a scan, and most functions have few parameters.
+ */
+#define STACK_ARGS 8
+
 Datum Function_invoke(Function self, PG_FUNCTION_ARGS)
 {
 	Datum retVal;
 	int32 top;
 	jvalue* args;
+	jvalue stackArgs[STACK_ARGS + 1];
 	Type  invokerType;
 
 	fcinfo->isnull = false;
@@ -811,7 +862,8 @@ Datum Function_invoke(Function self, PG_FUNCTION_ARGS)
 	/* Leave room for one extra parameter. Functions that returns unmapped
 	 * composite types must have a single row ResultSet as an OUT parameter.
 	 */
-	args  = (jvalue*)palloc((top + 1) * sizeof(jvalue));
+	args  = top > STACK_ARGS
+		? (jvalue*)palloc((top + 1) * sizeof(jvalue)) : stackArgs;
 	invokerType = self->func.nonudt.returnType;
 
 	if(top > 0)
@@ -843,7 +895,8 @@ Datum Function_invoke(Function self, PG_FUNCTION_ARGS)
 		? Type_invokeSRF(invokerType, self->clazz, self->func.nonudt.method, args, fcinfo)
 		: Type_invoke(invokerType, self->clazz, self->func.nonudt.method, args, fcinfo);
 
-	pfree(args);
+	if(args != stackArgs)
+		pfree(args);
 	return retVal;
 }
 
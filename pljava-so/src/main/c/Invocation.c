@@ -179,6 +179,9 @@ void Invocation_popInvocation(bool wasException)
 		JNI_deleteGlobalRef(currentInvocation->invocation);
 	}
 
+	if(!wasException)
+		Backend_drainJavaLog();
+
 	/*
 	 * Check for any DualState objects that became unreachable and can be freed.
 	 */
@@ -245,6 +245,25 @@ jdouble JNI_callDoubleMethodV(jobject object, jmethodID methodID, va_list args)
 	return result;
 }
 
+jdouble JNI_callDoubleMethodLocked(jobject object, jmethodID methodID, ...)
+{
+	jdouble result;
+	va_list args;
+	va_start(args, methodID);
+	result = JNI_callDoubleMethodLockedV(object, methodID, args);
+	va_end(args);
+	return result;
+}
+
+jdouble JNI_callDoubleMethodLockedV(jobject object, jmethodID methodID, va_list args)
+{
+	jdouble result;
+	BEGIN_CALL_MONITOR_HELD
+	result = (*env)->CallDoubleMethodV(env, object, methodID, args);
+	END_CALL_MONITOR_HELD
+	return result;
+}
+
 jfloat JNI_callFloatMethod(jobject object, jmethodID methodID, ...)
 {
 	jfloat result;
@@ -938,6 +957,15 @@ jboolean JNI_isCallingJava(void)
 	return jniEnv == 0;
 }
 
+jboolean JNI_isAssignableFrom(jclass clazz1, jclass clazz2)
+{
+	jboolean result;
+	BEGIN_JAVA
+	result = (*env)->IsAssignableFrom(env, clazz1, clazz2);
+	END_JAVA
+	return result;
+}
+
 jboolean JNI_isInstanceOf(jobject obj, jclass clazz)
 {
 	jboolean result;
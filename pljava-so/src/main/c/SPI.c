@@ -54,6 +54,16 @@ void SPI_initialize(void)
 		"()V",
 		Java_org_postgresql_pljava_internal_SPI__1freeTupTable
 		},
+		{
+		"_getTupTableSize",
+		"()J",
+		Java_org_postgresql_pljava_internal_SPI__1getTupTableSize
+		},
+		{
+		"_getTupTableColumns",
+		"([Ljava/lang/Object;[Ljava/lang/Object;[Ljava/lang/Object;)I",
+		Java_org_postgresql_pljava_internal_SPI__1getTupTableColumns
+		},
 		{ 0, 0, 0 }};
 
 	PgObject_registerNatives("org/postgresql/pljava/internal/SPI", methods);
@@ -138,6 +148,267 @@ Java_org_postgresql_pljava_internal_SPI__1getTupTable(JNIEnv* env, jclass cls, j
 	return tupleTable;
 }
 
+/*
+ * Class:     org_postgresql_pljava_internal_SPI
+ * Method:    _getTupTableSize
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL
+Java_org_postgresql_pljava_internal_SPI__1getTupTableSize(JNIEnv* env, jclass cls)
+{
+	jlong size = 0;
+	SPITupleTable* tts = SPI_tuptable;
+	if(tts != 0)
+	{
+		uint64 idx;
+		uint64 tupcount = tts->alloced - tts->free;
+		for(idx = 0; idx < tupcount; ++idx)
+			size += tts->vals[idx]->t_len;
+	}
+	return size;
+}
+
+/*
+ * One column of SPI_tuptable being gathered by getTupTableColumns.
+ */
+typedef struct
+{
+	Oid            typeId;
+	void*          values;  /* jint, jlong, or jdouble per row */
+	jint*          offsets; /* rows + 1 of them, for a column of bytes */
+	StringInfoData bytes;
+	jlong*         nulls;   /* bitmap, one bit per row */
+	bool           hasNulls;
+} ColumnBuffer;
+
+/*
+ * Store each column of the tuple table into data[i] as an int[], long[],
+ * double[], or byte[] (with the start of each row's bytes in offsets[i]), and
+ * a bitmap of its null rows into nulls[i] if it has any. The tuples are
+ * deformed once each, row by row, into palloc'd columns, and each column is
+ * then copied to Java in one piece. Allocates in the current memory context,
+ * which the caller cleans up.
+ */
+static void gatherColumns(SPITupleTable* tts, jint nRows,
+	jobjectArray data, jobjectArray offsets, jobjectArray nulls)
+{
+	TupleDesc tupdesc = tts->tupdesc;
+	int natts = tupdesc->natts;
+	int nWords = (int)(((int64)nRows + 63) >> 6);
+	ColumnBuffer* cols;
+	Datum* values;
+	bool* isnull;
+	int col;
+	jint row;
+
+	cols = (ColumnBuffer*)palloc0(natts * sizeof(ColumnBuffer));
+	values = (Datum*)palloc(natts * sizeof(Datum));
+	isnull = (bool*)palloc(natts * sizeof(bool));
+
+	for(col = 0; col < natts; ++col)
+	{
+		ColumnBuffer* cb = cols + col;
+		cb->typeId = SPI_gettypeid(tupdesc, col + 1);
+		cb->nulls = (jlong*)palloc0(nWords * sizeof(jlong));
+		switch(cb->typeId)
+		{
+		case BOOLOID:
+		case INT2OID:
+		case INT4OID:
+			cb->values = palloc0(nRows * sizeof(jint));
+			break;
+		case INT8OID:
+			cb->values = palloc0(nRows * sizeof(jlong));
+			break;
+		case FLOAT4OID:
+		case FLOAT8OID:
+			cb->values = palloc0(nRows * sizeof(jdouble));
+			break;
+		default:
+			cb->offsets = (jint*)palloc((nRows + 1) * sizeof(jint));
+			initStringInfo(&cb->bytes);
+		}
+	}
+
+	for(row = 0; row < nRows; ++row)
+	{
+		HeapTuple tuple = tts->vals[row];
+		heap_deform_tuple(tuple, tupdesc, values, isnull);
+		for(col = 0; col < natts; ++col)
+		{
+			ColumnBuffer* cb = cols + col;
+			Datum d = values[col];
+
+			if(cb->offsets != 0)
+				cb->offsets[row] = (jint)cb->bytes.len;
+
+			if(isnull[col])
+			{
+				cb->nulls[row >> 6] |= (jlong)1 << (row & 63);
+				cb->hasNulls = true;
+				continue;
+			}
+
+			switch(cb->typeId)
+			{
+			case BOOLOID:
+				((jint*)cb->values)[row] = DatumGetBool(d) ? 1 : 0;
+				break;
+			case INT2OID:
+				((jint*)cb->values)[row] = DatumGetInt16(d);
+				break;
+			case INT4OID:
+				((jint*)cb->values)[row] = DatumGetInt32(d);
+				break;
+			case INT8OID:
+				((jlong*)cb->values)[row] = DatumGetInt64(d);
+				break;
+			case FLOAT4OID:
+				((jdouble*)cb->values)[row] = DatumGetFloat4(d);
+				break;
+			case FLOAT8OID:
+				((jdouble*)cb->values)[row] = DatumGetFloat8(d);
+				break;
+			case BYTEAOID:
+			case TEXTOID:
+			case VARCHAROID:
+			{
+				struct varlena* vl = PG_DETOAST_DATUM_PACKED(d);
+				appendBinaryStringInfo(&cb->bytes,
+					VARDATA_ANY(vl), VARSIZE_ANY_EXHDR(vl));
+				if((Pointer)vl != DatumGetPointer(d))
+					pfree(vl);
+				break;
+			}
+			default:
+			{
+				char* text = SPI_getvalue(tuple, tupdesc, col + 1);
+				appendStringInfoString(&cb->bytes, text);
+				pfree(text);
+			}
+			}
+		}
+	}
+
+	for(col = 0; col < natts; ++col)
+	{
+		ColumnBuffer* cb = cols + col;
+		jarray array;
+		switch(cb->typeId)
+		{
+		case BOOLOID:
+		case INT2OID:
+		case INT4OID:
+			array = JNI_newIntArray(nRows);
+			JNI_setIntArrayRegion(array, 0, nRows, (jint*)cb->values);
+			break;
+		case INT8OID:
+			array = JNI_newLongArray(nRows);
+			JNI_setLongArrayRegion(array, 0, nRows, (jlong*)cb->values);
+			break;
+		case FLOAT4OID:
+		case FLOAT8OID:
+			array = JNI_newDoubleArray(nRows);
+			JNI_setDoubleArrayRegion(array, 0, nRows, (jdouble*)cb->values);
+			break;
+		default:
+		{
+			jintArray offs;
+			cb->offsets[nRows] = (jint)cb->bytes.len;
+			offs = JNI_newIntArray(nRows + 1);
+			JNI_setIntArrayRegion(offs, 0, nRows + 1, cb->offsets);
+			JNI_setObjectArrayElement(offsets, col, offs);
+			JNI_deleteLocalRef(offs);
+			array = JNI_newByteArray(cb->bytes.len);
+			JNI_setByteArrayRegion(array, 0, cb->bytes.len,
+				(jbyte*)cb->bytes.data);
+		}
+		}
+		JNI_setObjectArrayElement(data, col, array);
+		JNI_deleteLocalRef(array);
+
+		if(cb->hasNulls)
+		{
+			jlongArray bits = JNI_newLongArray(nWords);
+			JNI_setLongArrayRegion(bits, 0, nWords, cb->nulls);
+			JNI_setObjectArrayElement(nulls, col, bits);
+			JNI_deleteLocalRef(bits);
+		}
+	}
+
+}
+
+/*
+ * Gather the columns of SPI_tuptable as gatherColumns does, in a memory
+ * context of their own that is deleted when done, or on error. Returns the
+ * number of rows.
+ */
+static jint getTupTableColumns(
+	jobjectArray data, jobjectArray offsets, jobjectArray nulls)
+{
+	SPITupleTable* tts = SPI_tuptable;
+	MemoryContext tmpCtx;
+	MemoryContext oldCtx;
+	uint64 tupcount;
+
+	if(tts == 0)
+		return 0;
+
+	tupcount = tts->alloced - tts->free;
+	if ( tupcount > PG_INT32_MAX )
+		ereport(ERROR,
+				(errcode(ERRCODE_FEATURE_NOT_SUPPORTED),
+				 errmsg("a PL/Java column batch cannot represent more than "
+					"INT32_MAX rows")));
+
+	tmpCtx = AllocSetContextCreate(CurrentMemoryContext,
+		"PL/Java column batch",
+		ALLOCSET_DEFAULT_MINSIZE,
+		ALLOCSET_DEFAULT_INITSIZE,
+		ALLOCSET_DEFAULT_MAXSIZE);
+	oldCtx = MemoryContextSwitchTo(tmpCtx);
+
+	PG_TRY();
+	{
+		gatherColumns(tts, (jint)tupcount, data, offsets, nulls);
+	}
+	PG_CATCH();
+	{
+		MemoryContextSwitchTo(oldCtx);
+		MemoryContextDelete(tmpCtx);
+		PG_RE_THROW();
+	}
+	PG_END_TRY();
+
+	MemoryContextSwitchTo(oldCtx);
+	MemoryContextDelete(tmpCtx);
+	return (jint)tupcount;
+}
+
+/*
+ * Class:     org_postgresql_pljava_internal_SPI
+ * Method:    _getTupTableColumns
+ * Signature: ([Ljava/lang/Object;[Ljava/lang/Object;[Ljava/lang/Object;)I
+ */
+JNIEXPORT jint JNICALL
+Java_org_postgresql_pljava_internal_SPI__1getTupTableColumns(JNIEnv* env, jclass cls, jobjectArray data, jobjectArray offsets, jobjectArray nulls)
+{
+	jint result = 0;
+
+	BEGIN_NATIVE
+	PG_TRY();
+	{
+		result = getTupTableColumns(data, offsets, nulls);
+	}
+	PG_CATCH();
+	{
+		Exception_throw_ERROR("getTupTableColumns");
+	}
+	PG_END_TRY();
+	END_NATIVE
+	return result;
+}
+
 /*
  * Class:     org_postgresql_pljava_internal_SPI
  * Method:    _freeTupTable
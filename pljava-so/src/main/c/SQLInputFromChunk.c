@@ -11,11 +11,33 @@
  *   Chapman Flack
  */
 #include <postgres.h>
+#include <utils/memutils.h>
 #include "pljava/SQLInputFromChunk.h"
 
 static jclass    s_SQLInputFromChunk_class;
 static jmethodID s_SQLInputFromChunk_init;
 static jmethodID s_SQLInputFromChunk_close;
+static jmethodID s_SQLInputFromChunk_reset;
+static jmethodID s_SQLInputFromChunk_readCodec;
+
+/*
+ * One reusable reader for each byte order (Java-based scalar or mirror),
+ * over a buffer of fixed size in TopMemoryContext. A value is copied into
+ * the buffer rather than wrapped in a new DirectByteBuffer, sparing a Java
+ * reader and a buffer object per value. The inUse flag covers the case of a
+ * readSQL method that (through SPI, say) causes another value to be read;
+ * the inner read simply gets a reader of its own.
+ */
+#define POOLED_CHUNK_SIZE 1024
+
+typedef struct
+{
+	jobject stream;
+	char*   data;
+	bool    inUse;
+} PooledReader;
+
+static PooledReader s_pool[2];
 
 jobject SQLInputFromChunk_create(void* data, size_t sz, bool isJavaBasedScalar)
 {
@@ -31,6 +53,55 @@ void SQLInputFromChunk_close(jobject stream)
 	JNI_callVoidMethod(stream, s_SQLInputFromChunk_close);
 }
 
+void SQLInputFromChunk_readCodec(jobject stream, jobject value)
+{
+	JNI_callVoidMethod(stream, s_SQLInputFromChunk_readCodec, value);
+}
+
+jobject SQLInputFromChunk_obtain(void* data, size_t sz, bool isJavaBasedScalar)
+{
+	PooledReader* pr = &s_pool[isJavaBasedScalar ? 1 : 0];
+	if(sz > POOLED_CHUNK_SIZE || pr->inUse)
+		return SQLInputFromChunk_create(data, sz, isJavaBasedScalar);
+
+	if(pr->stream == 0)
+	{
+		jobject stream;
+		pr->data = MemoryContextAlloc(TopMemoryContext, POOLED_CHUNK_SIZE);
+		stream = SQLInputFromChunk_create(pr->data, POOLED_CHUNK_SIZE,
+			isJavaBasedScalar);
+		pr->stream = JNI_newGlobalRef(stream);
+		JNI_deleteLocalRef(stream);
+	}
+	memcpy(pr->data, data, sz);
+	JNI_callVoidMethod(pr->stream, s_SQLInputFromChunk_reset, (jint)sz);
+	pr->inUse = true;
+	return pr->stream;
+}
+
+void SQLInputFromChunk_release(jobject stream)
+{
+	int idx;
+	SQLInputFromChunk_close(stream);
+	for(idx = 0; idx < 2; ++idx)
+	{
+		if(s_pool[idx].stream == stream)
+		{
+			s_pool[idx].inUse = false;
+			return;
+		}
+	}
+	JNI_deleteLocalRef(stream);
+}
+
+void SQLInputFromChunk_abandon(jobject stream)
+{
+	int idx;
+	for(idx = 0; idx < 2; ++idx)
+		if(s_pool[idx].stream == stream)
+			s_pool[idx].inUse = false;
+}
+
 /* Make this datatype available to the postgres system.
  */
 extern void SQLInputFromChunk_initialize(void);
@@ -40,4 +111,7 @@ void SQLInputFromChunk_initialize(void)
 	s_SQLInputFromChunk_init = PgObject_getJavaMethod(s_SQLInputFromChunk_class,
 		"<init>", "(Ljava/nio/ByteBuffer;Z)V");
 	s_SQLInputFromChunk_close = PgObject_getJavaMethod(s_SQLInputFromChunk_class, "close", "()V");
+	s_SQLInputFromChunk_reset = PgObject_getJavaMethod(s_SQLInputFromChunk_class, "reset", "(I)V");
+	s_SQLInputFromChunk_readCodec = PgObject_getJavaMethod(
+		s_SQLInputFromChunk_class, "read", "(Lorg/postgresql/pljava/UDTCodec;)V");
 }
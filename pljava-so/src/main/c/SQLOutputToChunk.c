@@ -7,6 +7,7 @@
  * @author Thomas Hallgren
  */
 #include <postgres.h>
+#include <utils/memutils.h>
 #include "pljava/SQLOutputToChunk.h"
 
 #include "org_postgresql_pljava_jdbc_SQLOutputToChunk.h"
@@ -14,8 +15,31 @@
 static jclass    s_SQLOutputToChunk_class;
 static jmethodID s_SQLOutputToChunk_init;
 static jmethodID s_SQLOutputToChunk_close;
+static jmethodID s_SQLOutputToChunk_initPooled;
+static jmethodID s_SQLOutputToChunk_reset;
+static jmethodID s_SQLOutputToChunk_finish;
+static jmethodID s_SQLOutputToChunk_writeCodec;
 static jmethodID s_Buffer_position;
 
+/*
+ * One reusable writer for each byte order (Java-based scalar or mirror), over
+ * a buffer of fixed size in TopMemoryContext, for fixed-length types only.
+ * Such a value has a known size, so it needs no StringInfo that can grow, and
+ * the caller copies the finished image to wherever it belongs. As for the
+ * pooled readers in SQLInputFromChunk.c, a writer already in use causes a
+ * nested request to get null, and the caller to fall back to a StringInfo.
+ */
+#define POOLED_CHUNK_SIZE 1024
+
+typedef struct
+{
+	jobject stream;
+	char*   data;
+	bool    inUse;
+} PooledWriter;
+
+static PooledWriter s_pool[2];
+
 jobject SQLOutputToChunk_create(StringInfo data, bool isJavaBasedScalar)
 {
 	jobject dbb;
@@ -39,6 +63,56 @@ void SQLOutputToChunk_close(jobject stream)
 	JNI_callVoidMethod(stream, s_SQLOutputToChunk_close);
 }
 
+void SQLOutputToChunk_writeCodec(jobject stream, jobject value, int32 length)
+{
+	JNI_callVoidMethod(stream, s_SQLOutputToChunk_writeCodec, value,
+		(jint)length);
+}
+
+jobject SQLOutputToChunk_obtain(int32 length, bool isJavaBasedScalar,
+	char** data)
+{
+	PooledWriter* pw = &s_pool[isJavaBasedScalar ? 1 : 0];
+	if(length < 0 || length > POOLED_CHUNK_SIZE || pw->inUse)
+		return 0;
+
+	if(pw->stream == 0)
+	{
+		jobject dbb;
+		jobject stream;
+		pw->data = MemoryContextAlloc(TopMemoryContext, POOLED_CHUNK_SIZE);
+		dbb = JNI_newDirectByteBuffer(pw->data, POOLED_CHUNK_SIZE);
+		stream = JNI_newObject(s_SQLOutputToChunk_class,
+			s_SQLOutputToChunk_initPooled, dbb,
+			isJavaBasedScalar ? JNI_TRUE : JNI_FALSE);
+		JNI_deleteLocalRef(dbb);
+		pw->stream = JNI_newGlobalRef(stream);
+		JNI_deleteLocalRef(stream);
+	}
+	JNI_callVoidMethod(pw->stream, s_SQLOutputToChunk_reset, (jint)length);
+	pw->inUse = true;
+	*data = pw->data;
+	return pw->stream;
+}
+
+int32 SQLOutputToChunk_release(jobject stream)
+{
+	int idx;
+	int32 length = JNI_callIntMethod(stream, s_SQLOutputToChunk_finish);
+	for(idx = 0; idx < 2; ++idx)
+		if(s_pool[idx].stream == stream)
+			s_pool[idx].inUse = false;
+	return length;
+}
+
+void SQLOutputToChunk_abandon(jobject stream)
+{
+	int idx;
+	for(idx = 0; idx < 2; ++idx)
+		if(s_pool[idx].stream == stream)
+			s_pool[idx].inUse = false;
+}
+
 /* Make this datatype available to the postgres system.
  */
 extern void SQLOutputToChunk_initialize(void);
@@ -59,6 +133,12 @@ void SQLOutputToChunk_initialize(void)
 	s_SQLOutputToChunk_init = PgObject_getJavaMethod(s_SQLOutputToChunk_class,
 		"<init>", "(JLjava/nio/ByteBuffer;Z)V");
 	s_SQLOutputToChunk_close = PgObject_getJavaMethod(s_SQLOutputToChunk_class, "close", "()V");
+	s_SQLOutputToChunk_initPooled = PgObject_getJavaMethod(
+		s_SQLOutputToChunk_class, "<init>", "(Ljava/nio/ByteBuffer;Z)V");
+	s_SQLOutputToChunk_reset = PgObject_getJavaMethod(s_SQLOutputToChunk_class, "reset", "(I)V");
+	s_SQLOutputToChunk_finish = PgObject_getJavaMethod(s_SQLOutputToChunk_class, "finish", "()I");
+	s_SQLOutputToChunk_writeCodec = PgObject_getJavaMethod(
+		s_SQLOutputToChunk_class, "write", "(Lorg/postgresql/pljava/UDTCodec;I)V");
 
 	Buffer_class = PgObject_getJavaClass("java/nio/Buffer");
 	s_Buffer_position = PgObject_getJavaMethod(Buffer_class, "position",
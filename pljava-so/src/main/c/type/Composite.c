@@ -271,6 +271,26 @@ void Composite_initialize(void)
 	  	Java_org_postgresql_pljava_jdbc_SingleRowReader__1getObject
 		},
 		{
+		"_getInt",
+		"(JJI[Z)I",
+		Java_org_postgresql_pljava_jdbc_SingleRowReader__1getInt
+		},
+		{
+		"_getLong",
+		"(JJI[Z)J",
+		Java_org_postgresql_pljava_jdbc_SingleRowReader__1getLong
+		},
+		{
+		"_getDouble",
+		"(JJI[Z)D",
+		Java_org_postgresql_pljava_jdbc_SingleRowReader__1getDouble
+		},
+		{
+		"_getBoolean",
+		"(JJI[Z)Z",
+		Java_org_postgresql_pljava_jdbc_SingleRowReader__1getBoolean
+		},
+		{
 		"_free",
 		"(J)V",
 		Java_org_postgresql_pljava_jdbc_SingleRowReader__1free
@@ -336,3 +356,47 @@ Java_org_postgresql_pljava_jdbc_SingleRowReader__1getObject(JNIEnv* env, jclass
 {
 	return HeapTupleHeader_getObject(env, hth, jtd, attrNo, rqcls);
 }
+
+/*
+ * Class:     org_postgresql_pljava_jdbc_SingleRowReader
+ * Method:    _getInt
+ * Signature: (JJI[Z)I
+ */
+JNIEXPORT jint JNICALL
+Java_org_postgresql_pljava_jdbc_SingleRowReader__1getInt(JNIEnv* env, jclass clazz, jlong hth, jlong jtd, jint attrNo, jbooleanArray wasNull)
+{
+	return HeapTupleHeader_getPrimitive(env, hth, jtd, attrNo, wasNull, 'I').i;
+}
+
+/*
+ * Class:     org_postgresql_pljava_jdbc_SingleRowReader
+ * Method:    _getLong
+ * Signature: (JJI[Z)J
+ */
+JNIEXPORT jlong JNICALL
+Java_org_postgresql_pljava_jdbc_SingleRowReader__1getLong(JNIEnv* env, jclass clazz, jlong hth, jlong jtd, jint attrNo, jbooleanArray wasNull)
+{
+	return HeapTupleHeader_getPrimitive(env, hth, jtd, attrNo, wasNull, 'J').j;
+}
+
+/*
+ * Class:     org_postgresql_pljava_jdbc_SingleRowReader
+ * Method:    _getDouble
+ * Signature: (JJI[Z)D
+ */
+JNIEXPORT jdouble JNICALL
+Java_org_postgresql_pljava_jdbc_SingleRowReader__1getDouble(JNIEnv* env, jclass clazz, jlong hth, jlong jtd, jint attrNo, jbooleanArray wasNull)
+{
+	return HeapTupleHeader_getPrimitive(env, hth, jtd, attrNo, wasNull, 'D').d;
+}
+
+/*
+ * Class:     org_postgresql_pljava_jdbc_SingleRowReader
+ * Method:    _getBoolean
+ * Signature: (JJI[Z)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_postgresql_pljava_jdbc_SingleRowReader__1getBoolean(JNIEnv* env, jclass clazz, jlong hth, jlong jtd, jint attrNo, jbooleanArray wasNull)
+{
+	return HeapTupleHeader_getPrimitive(env, hth, jtd, attrNo, wasNull, 'Z').z;
+}
@@ -90,8 +90,9 @@ static Datum _doubleArray_coerceObject(Type self, jobject doubleArray)
 
 		for(idx = 0; idx < nElems; ++idx)
 		{
-			array[idx] = JNI_callDoubleMethod(JNI_getObjectArrayElement(doubleArray, idx),
-						       s_Double_doubleValue);
+			jobject elem = JNI_getObjectArrayElement(doubleArray, idx);
+			array[idx] = JNI_callDoubleMethodLocked(elem, s_Double_doubleValue);
+			JNI_deleteLocalRef(elem);
 		}
 
 	}
@@ -22,21 +22,13 @@
 
 #include "pljava/Exception.h"
 #include "pljava/Invocation.h"
+#include "pljava/type/Tuple.h"
 #include "pljava/type/TupleDesc.h"
 
 jobject HeapTupleHeader_getTupleDesc(HeapTupleHeader ht)
 {
-	jobject result;
-	TupleDesc tupleDesc =
-	  lookup_rowtype_tupdesc(HeapTupleHeaderGetTypeId(ht),
+	return TupleDesc_forRowType(HeapTupleHeaderGetTypeId(ht),
 				 HeapTupleHeaderGetTypMod(ht));
-	result = TupleDesc_create(tupleDesc);
-	/*
-	 * TupleDesc_create() creates a copy of the tuple descriptor, so
-	 * can release this now
-	 */
-	ReleaseTupleDesc(tupleDesc);
-	return result;
 }
 
 jobject HeapTupleHeader_getObject(
@@ -73,6 +65,44 @@ jobject HeapTupleHeader_getObject(
 		
 }
 
+jvalue HeapTupleHeader_getPrimitive(JNIEnv* env, jlong hth, jlong jtd,
+	jint attrNo, jbooleanArray wasNull, char kind)
+{
+	jvalue result;
+	HeapTupleHeader self = (HeapTupleHeader)Invocation_getWrappedPointer(hth);
+	result.j = 0;
+	if(self != 0 && jtd != 0)
+	{
+		Ptr2Long p2l;
+		p2l.longVal = jtd;
+		BEGIN_NATIVE
+		PG_TRY();
+		{
+			Oid typeId = SPI_gettypeid((TupleDesc)p2l.ptrVal, (int)attrNo);
+			if(!OidIsValid(typeId))
+			{
+				Exception_throw(ERRCODE_INVALID_DESCRIPTOR_INDEX,
+					"Invalid attribute index \"%d\"", (int)attrNo);
+			}
+			else
+			{
+				bool wasNullC = false;
+				Datum binVal =
+					GetAttributeByNum(self, (AttrNumber)attrNo, &wasNullC);
+				result = Tuple_getPrimitive(
+					binVal, wasNullC, typeId, kind, wasNull);
+			}
+		}
+		PG_CATCH();
+		{
+			Exception_throw_ERROR("GetAttributeByNum");
+		}
+		PG_END_TRY();
+		END_NATIVE
+	}
+	return result;
+}
+
 void HeapTupleHeader_free(JNIEnv* env, jlong hth)
 {
 	BEGIN_NATIVE_NO_ERRCHECK
@@ -84,8 +84,9 @@ static Datum _intArray_coerceObject(Type self, jobject intArray)
 
 	    for(idx = 0; idx < nElems; ++idx)
 	      {
-		array[idx] = JNI_callIntMethod(JNI_getObjectArrayElement(intArray, idx),
-					       s_Integer_intValue);
+		jobject elem = JNI_getObjectArrayElement(intArray, idx);
+		array[idx] = JNI_callIntMethodLocked(elem, s_Integer_intValue);
+		JNI_deleteLocalRef(elem);
 	      }
 	  }
 
@@ -91,8 +91,9 @@ static Datum _longArray_coerceObject(Type self, jobject longArray)
 
 		for(idx = 0; idx < nElems; ++idx)
 		{
-			array[idx] = JNI_callLongMethod(JNI_getObjectArrayElement(longArray, idx),
-							s_Long_longValue);
+			jobject elem = JNI_getObjectArrayElement(longArray, idx);
+			array[idx] = JNI_callLongMethodLocked(elem, s_Long_longValue);
+			JNI_deleteLocalRef(elem);
 		}
 	}
 
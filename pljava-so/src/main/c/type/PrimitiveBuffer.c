@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+#include <postgres.h>
+
+#include "pljava/type/Type_priv.h"
+#include "pljava/type/Array.h"
+
+/*
+ * java.nio.IntBuffer, LongBuffer, and DoubleBuffer as mappings for one
+ * dimensional int4[], int8[], and float8[] without nulls. The array's data
+ * are contiguous in native byte order, so they can be copied into a Java
+ * int[], long[], or double[] in one piece, with no element by element copying
+ * or boxing, and a buffer of the right kind wrapped around that.
+ */
+typedef struct PrimitiveBufferClass_* PrimitiveBufferClass;
+
+struct PrimitiveBufferClass_
+{
+	struct TypeClass_ TypeClass_extension;
+
+	/*
+	 * The PostgreSQL element type, and its size.
+	 */
+	Oid       elementType;
+	int       elementSize;
+
+	/*
+	 * ByteBuffer.asIntBuffer() or its counterpart for this class.
+	 */
+	jmethodID ByteBuffer_asView;
+
+	/*
+	 * The view class itself, its static wrap() over a Java array, and
+	 * other methods.
+	 */
+	jclass    viewClass;
+	jmethodID wrap;
+	jmethodID asReadOnlyBuffer;
+	jmethodID duplicate;
+	jmethodID put;
+};
+
+static jclass    s_ByteBuffer_class;
+static jmethodID s_ByteBuffer_order;
+static jclass    s_Buffer_class;
+static jmethodID s_Buffer_remaining;
+static jobject   s_nativeOrder;
+
+static bool   _PrimitiveBuffer_canReplaceType(Type self, Type other);
+static jvalue _PrimitiveBuffer_coerceDatum(Type self, Datum arg);
+static Datum  _PrimitiveBuffer_coerceObject(Type self, jobject buf);
+
+static bool _PrimitiveBuffer_canReplaceType(Type self, Type other)
+{
+	PrimitiveBufferClass cls = (PrimitiveBufferClass)Type_getClass(self);
+	Type oe = Type_getElementType(other);
+	return
+		(TypeClass)cls == Type_getClass(other)  ||
+		( oe != 0  &&  Type_getOid(oe) == cls->elementType );
+}
+
+/*
+ * The data are copied with a single Set<Type>ArrayRegion into a Java array,
+ * which the buffer wraps, so it stays valid however long Java code keeps it
+ * and is freed by the garbage collector like any array.
+ */
+static jvalue _PrimitiveBuffer_coerceDatum(Type self, Datum arg)
+{
+	jvalue result;
+	jarray array;
+	jobject buf;
+	PrimitiveBufferClass cls = (PrimitiveBufferClass)Type_getClass(self);
+	ArrayType* v = DatumGetArrayTypeP(arg);
+	jsize nElems = (jsize)ArrayGetNItems(ARR_NDIM(v), ARR_DIMS(v));
+
+	if(ARR_HASNULL(v))
+		ereport(ERROR, (
+			errcode(ERRCODE_NULL_VALUE_NOT_ALLOWED),
+			errmsg("an array containing nulls cannot be passed as %s",
+				Type_getJavaTypeName(self))));
+
+	switch(cls->elementType)
+	{
+	case INT4OID:
+		array = JNI_newIntArray(nElems);
+		JNI_setIntArrayRegion(array, 0, nElems, (jint*)ARR_DATA_PTR(v));
+		break;
+	case INT8OID:
+		array = JNI_newLongArray(nElems);
+		JNI_setLongArrayRegion(array, 0, nElems, (jlong*)ARR_DATA_PTR(v));
+		break;
+	default:
+		array = JNI_newDoubleArray(nElems);
+		JNI_setDoubleArrayRegion(array, 0, nElems, (jdouble*)ARR_DATA_PTR(v));
+	}
+	if((Pointer)v != DatumGetPointer(arg))
+		pfree(v);
+
+	buf = JNI_callStaticObjectMethodLocked(cls->viewClass, cls->wrap, array);
+	JNI_deleteLocalRef(array);
+	result.l = JNI_callObjectMethodLocked(buf, cls->asReadOnlyBuffer);
+	JNI_deleteLocalRef(buf);
+	return result;
+}
+
+/*
+ * The remaining elements of the buffer become a one dimensional array; the
+ * buffer's own position is not changed.
+ */
+static Datum _PrimitiveBuffer_coerceObject(Type self, jobject buf)
+{
+	ArrayType* v;
+	jobject src;
+	jobject bb;
+	jobject ordered;
+	jobject dst;
+	jint nElems;
+	PrimitiveBufferClass cls = (PrimitiveBufferClass)Type_getClass(self);
+
+	if(buf == 0)
+		return 0;
+
+	src = JNI_callObjectMethodLocked(buf, cls->duplicate);
+	nElems = JNI_callIntMethodLocked(src, s_Buffer_remaining);
+	v = createArrayType(nElems, cls->elementSize, cls->elementType, false);
+
+	bb = JNI_newDirectByteBuffer(ARR_DATA_PTR(v),
+		(jlong)nElems * cls->elementSize);
+	ordered = JNI_callObjectMethodLocked(bb, s_ByteBuffer_order, s_nativeOrder);
+	dst = JNI_callObjectMethodLocked(ordered, cls->ByteBuffer_asView);
+	JNI_deleteLocalRef(JNI_callObjectMethodLocked(dst, cls->put, src));
+	JNI_deleteLocalRef(dst);
+	JNI_deleteLocalRef(ordered);
+	JNI_deleteLocalRef(bb);
+	JNI_deleteLocalRef(src);
+
+	PG_RETURN_ARRAYTYPE_P(v);
+}
+
+/*
+ * Registered with obtainers rather than fixed instances, so that registering
+ * does not make these the default mappings for the array types' Oids.
+ */
+static PrimitiveBufferClass s_IntBufferClass;
+static PrimitiveBufferClass s_LongBufferClass;
+static PrimitiveBufferClass s_DoubleBufferClass;
+
+static Type obtain(PrimitiveBufferClass cls, Type* cache, Oid typeId)
+{
+	if(*cache == 0)
+		*cache = TypeClass_allocInstance((TypeClass)cls, typeId);
+	return *cache;
+}
+
+static Type _IntBuffer_obtain(Oid typeId)
+{
+	static Type instance;
+	return obtain(s_IntBufferClass, &instance, typeId);
+}
+
+static Type _LongBuffer_obtain(Oid typeId)
+{
+	static Type instance;
+	return obtain(s_LongBufferClass, &instance, typeId);
+}
+
+static Type _DoubleBuffer_obtain(Oid typeId)
+{
+	static Type instance;
+	return obtain(s_DoubleBufferClass, &instance, typeId);
+}
+
+static PrimitiveBufferClass registerBufferClass(
+	const char* javaTypeName, const char* className, const char* viewMethod,
+	const char* arrayDescriptor, Oid elementType, int elementSize,
+	TypeObtainer obtainer)
+{
+	jclass viewClass;
+	StringInfoData sig;
+	PrimitiveBufferClass cls = (PrimitiveBufferClass)TypeClass_alloc2(
+		className, sizeof(struct PrimitiveBufferClass_), sizeof(struct Type_));
+	TypeClass tc = (TypeClass)cls;
+	char* jniName = MemoryContextStrdup(TopMemoryContext, javaTypeName);
+	char* p;
+
+	for(p = jniName; *p != 0; ++p)
+		if(*p == '.')
+			*p = '/';
+
+	initStringInfo(&sig);
+	appendStringInfo(&sig, "L%s;", jniName);
+	tc->JNISignature = MemoryContextStrdup(TopMemoryContext, sig.data);
+	tc->javaTypeName = javaTypeName;
+	tc->canReplaceType = _PrimitiveBuffer_canReplaceType;
+	tc->coerceDatum  = _PrimitiveBuffer_coerceDatum;
+	tc->coerceObject = _PrimitiveBuffer_coerceObject;
+
+	cls->elementType = elementType;
+	cls->elementSize = elementSize;
+
+	resetStringInfo(&sig);
+	appendStringInfo(&sig, "()L%s;", jniName);
+	cls->ByteBuffer_asView = PgObject_getJavaMethod(
+		s_ByteBuffer_class, viewMethod, sig.data);
+
+	viewClass = PgObject_getJavaClass(jniName);
+	cls->viewClass = JNI_newGlobalRef(viewClass);
+	cls->asReadOnlyBuffer = PgObject_getJavaMethod(
+		viewClass, "asReadOnlyBuffer", sig.data);
+	cls->duplicate = PgObject_getJavaMethod(viewClass, "duplicate", sig.data);
+
+	resetStringInfo(&sig);
+	appendStringInfo(&sig, "(%s)L%s;", arrayDescriptor, jniName);
+	cls->wrap = PgObject_getStaticJavaMethod(viewClass, "wrap", sig.data);
+
+	resetStringInfo(&sig);
+	appendStringInfo(&sig, "(L%s;)L%s;", jniName, jniName);
+	cls->put = PgObject_getJavaMethod(viewClass, "put", sig.data);
+	JNI_deleteLocalRef(viewClass);
+	pfree(sig.data);
+
+	Type_registerType2(InvalidOid, javaTypeName, obtainer);
+	return cls;
+}
+
+/* Make these datatypes available to the postgres system.
+ */
+extern void pljava_PrimitiveBuffer_initialize(void);
+void pljava_PrimitiveBuffer_initialize(void)
+{
+	jclass byteOrder_class;
+	jmethodID byteOrder_nativeOrder;
+
+	s_ByteBuffer_class = JNI_newGlobalRef(PgObject_getJavaClass(
+		"java/nio/ByteBuffer"));
+	s_ByteBuffer_order = PgObject_getJavaMethod(s_ByteBuffer_class,
+		"order", "(Ljava/nio/ByteOrder;)Ljava/nio/ByteBuffer;");
+
+	s_Buffer_class = JNI_newGlobalRef(PgObject_getJavaClass(
+		"java/nio/Buffer"));
+	s_Buffer_remaining = PgObject_getJavaMethod(s_Buffer_class,
+		"remaining", "()I");
+
+	byteOrder_class = PgObject_getJavaClass("java/nio/ByteOrder");
+	byteOrder_nativeOrder = PgObject_getStaticJavaMethod(byteOrder_class,
+		"nativeOrder", "()Ljava/nio/ByteOrder;");
+	s_nativeOrder = JNI_newGlobalRef(JNI_callStaticObjectMethodLocked(
+		byteOrder_class, byteOrder_nativeOrder));
+	JNI_deleteLocalRef(byteOrder_class);
+
+	s_IntBufferClass = registerBufferClass(
+		"java.nio.IntBuffer", "type.IntBuffer", "asIntBuffer", "[I",
+		INT4OID, sizeof(jint), _IntBuffer_obtain);
+	s_LongBufferClass = registerBufferClass(
+		"java.nio.LongBuffer", "type.LongBuffer", "asLongBuffer", "[J",
+		INT8OID, sizeof(jlong), _LongBuffer_obtain);
+	s_DoubleBufferClass = registerBufferClass(
+		"java.nio.DoubleBuffer", "type.DoubleBuffer", "asDoubleBuffer", "[D",
+		FLOAT8OID, sizeof(jdouble), _DoubleBuffer_obtain);
+}
@@ -60,7 +60,7 @@ void Relation_initialize(void)
 		},
 		{
 		"_modifyTuple",
-		"(JJ[I[Ljava/lang/Object;)Lorg/postgresql/pljava/internal/Tuple;",
+		"(JJ[I[Ljava/lang/Object;I)Lorg/postgresql/pljava/internal/Tuple;",
 		Java_org_postgresql_pljava_internal_Relation__1modifyTuple
 		},
 		{ 0, 0, 0 }
@@ -158,7 +158,7 @@ Java_org_postgresql_pljava_internal_Relation__1getTupleDesc(JNIEnv* env, jclass
 	if(self != 0)
 	{
 		BEGIN_NATIVE
-		result = TupleDesc_create(self->rd_att);
+		result = TupleDesc_forRelation(self);
 		END_NATIVE
 	}
 	return result;
@@ -167,7 +167,10 @@ Java_org_postgresql_pljava_internal_Relation__1getTupleDesc(JNIEnv* env, jclass
 /*
  * Class:     org_postgresql_pljava_internal_Relation
  * Method:    _modifyTuple
- * Signature: (JJ[I[Ljava/lang/Object;)Lorg/postgresql/internal/pljava/Tuple;
+ * Signature: (JJ[I[Ljava/lang/Object;I)Lorg/postgresql/internal/pljava/Tuple;
+ *
+ * Only the first _count elements of _indexes and _values are used, so a
+ * caller can pass arrays it keeps for reuse.
  *
  * Note: starting with PostgreSQL 10, SPI_modifytuple must be run with SPI
  * 'connected'. However, the caller likely wants a result living in a memory
@@ -180,7 +183,7 @@ Java_org_postgresql_pljava_internal_Relation__1getTupleDesc(JNIEnv* env, jclass
  * memory context is selected for the result the caller wants.
  */
 JNIEXPORT jobject JNICALL
-Java_org_postgresql_pljava_internal_Relation__1modifyTuple(JNIEnv* env, jclass clazz, jlong _this, jlong _tuple, jintArray _indexes, jobjectArray _values)
+Java_org_postgresql_pljava_internal_Relation__1modifyTuple(JNIEnv* env, jclass clazz, jlong _this, jlong _tuple, jintArray _indexes, jobjectArray _values, jint _count)
 {
 	Relation self = Invocation_getWrappedPointer(_this);
 	jobject result = 0;
@@ -197,7 +200,8 @@ Java_org_postgresql_pljava_internal_Relation__1modifyTuple(JNIEnv* env, jclass c
 			TupleDesc tupleDesc = self->rd_att;
 			jobject typeMap = Invocation_getTypeMap();
 
-			jint   count  = JNI_getArrayLength(_indexes);
+			jint   length = JNI_getArrayLength(_indexes);
+			jint   count  = _count < length ? _count : length;
 			Datum* values = (Datum*)palloc(count * sizeof(Datum));
 			char*  nulls  = 0;
 		
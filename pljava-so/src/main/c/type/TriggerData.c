@@ -62,6 +62,11 @@ void TriggerData_initialize(void)
 	  	Java_org_postgresql_pljava_internal_TriggerData__1getRelation
 		},
 		{
+		"_getTupleDesc",
+	  	"(J)Lorg/postgresql/pljava/internal/TupleDesc;",
+	  	Java_org_postgresql_pljava_internal_TriggerData__1getTupleDesc
+		},
+		{
 		"_getTriggerTuple",
 		"(J)Lorg/postgresql/pljava/internal/Tuple;",
 		Java_org_postgresql_pljava_internal_TriggerData__1getTriggerTuple
@@ -116,6 +121,11 @@ void TriggerData_initialize(void)
 	  	"(J)Z",
 	  	Java_org_postgresql_pljava_internal_TriggerData__1isFiredByUpdate
 		},
+		{
+		"_getTransitionTableName",
+	  	"(JZ)Ljava/lang/String;",
+	  	Java_org_postgresql_pljava_internal_TriggerData__1getTransitionTableName
+		},
 		{ 0, 0, 0 }
 	};
 
@@ -169,6 +179,25 @@ Java_org_postgresql_pljava_internal_TriggerData__1getRelation(JNIEnv* env, jclas
 	return result;
 }
 
+/*
+ * Class:     org_postgresql_pljava_TriggerData
+ * Method:    _getTupleDesc
+ * Signature: (J)Lorg/postgresql/pljava/internal/TupleDesc;
+ */
+JNIEXPORT jobject JNICALL
+Java_org_postgresql_pljava_internal_TriggerData__1getTupleDesc(JNIEnv* env, jclass clazz, jlong _this)
+{
+	jobject result = 0;
+	TriggerData* self = Invocation_getWrappedPointer(_this);
+	if(self != 0)
+	{
+		BEGIN_NATIVE
+		result = TupleDesc_forRelation(self->tg_relation);
+		END_NATIVE
+	}
+	return result;
+}
+
 /*
  * Class:     org_postgresql_pljava_TriggerData
  * Method:    _getTriggerTuple
@@ -361,3 +390,31 @@ Java_org_postgresql_pljava_internal_TriggerData__1isFiredByUpdate(JNIEnv* env, j
 		result = (jboolean)TRIGGER_FIRED_BY_UPDATE(self->tg_event);
 	return result;
 }
+
+/*
+ * Class:     org_postgresql_pljava_TriggerData
+ * Method:    _getTransitionTableName
+ * Signature: (JZ)Ljava/lang/String;
+ *
+ * The name under which the new (or old) transition table can be queried
+ * through SPI, or null if the trigger has none. Invocation_assertConnect
+ * registers the transition tables when it connects SPI for a trigger.
+ */
+JNIEXPORT jstring JNICALL
+Java_org_postgresql_pljava_internal_TriggerData__1getTransitionTableName(JNIEnv* env, jclass clazz, jlong _this, jboolean isNew)
+{
+	jstring result = 0;
+#if PG_VERSION_NUM >= 100000
+	TriggerData* self = Invocation_getWrappedPointer(_this);
+	if(self != 0)
+	{
+		char* name;
+		BEGIN_NATIVE
+		name = isNew ? self->tg_trigger->tgnewtable : self->tg_trigger->tgoldtable;
+		if(name != 0)
+			result = String_createJavaStringFromNTS(name);
+		END_NATIVE
+	}
+#endif
+	return result;
+}
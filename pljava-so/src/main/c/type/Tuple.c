@@ -13,6 +13,7 @@
  * @author Thomas Hallgren
  */
 #include <postgres.h>
+#include <catalog/pg_type.h>
 #include <executor/spi.h>
 #include <executor/tuptable.h>
 
@@ -87,6 +88,26 @@ void Tuple_initialize(void)
 	  	Java_org_postgresql_pljava_internal_Tuple__1getObject
 		},
 		{
+		"_getInt",
+		"(JJI[Z)I",
+	  	Java_org_postgresql_pljava_internal_Tuple__1getInt
+		},
+		{
+		"_getLong",
+		"(JJI[Z)J",
+	  	Java_org_postgresql_pljava_internal_Tuple__1getLong
+		},
+		{
+		"_getDouble",
+		"(JJI[Z)D",
+	  	Java_org_postgresql_pljava_internal_Tuple__1getDouble
+		},
+		{
+		"_getBoolean",
+		"(JJI[Z)Z",
+	  	Java_org_postgresql_pljava_internal_Tuple__1getBoolean
+		},
+		{
 		"_free",
 	  	"(J)V",
 	  	Java_org_postgresql_pljava_internal_Tuple__1free
@@ -127,6 +148,121 @@ Tuple_getObject(TupleDesc tupleDesc, HeapTuple tuple, int index, jclass rqcls)
 	return result;
 }
 
+jvalue Tuple_getPrimitive(
+	Datum value, bool isNull, Oid typeId, char kind, jbooleanArray wasNull)
+{
+	jvalue result;
+	jboolean jNull = isNull ? JNI_TRUE : JNI_FALSE;
+	const char* javaType = "boolean";
+
+	JNI_setBooleanArrayRegion(wasNull, 0, 1, &jNull);
+	result.j = 0;
+	switch(kind)
+	{
+	case 'I':
+		javaType = "int";
+		if(typeId == INT4OID)
+		{
+			if(!isNull)
+				result.i = DatumGetInt32(value);
+			return result;
+		}
+		if(typeId == INT2OID)
+		{
+			if(!isNull)
+				result.i = DatumGetInt16(value);
+			return result;
+		}
+		break;
+	case 'J':
+		javaType = "long";
+		if(typeId == INT8OID)
+		{
+			if(!isNull)
+				result.j = DatumGetInt64(value);
+			return result;
+		}
+		if(typeId == INT4OID)
+		{
+			if(!isNull)
+				result.j = DatumGetInt32(value);
+			return result;
+		}
+		if(typeId == INT2OID)
+		{
+			if(!isNull)
+				result.j = DatumGetInt16(value);
+			return result;
+		}
+		break;
+	case 'D':
+		javaType = "double";
+		if(typeId == FLOAT8OID)
+		{
+			if(!isNull)
+				result.d = DatumGetFloat8(value);
+			return result;
+		}
+		if(typeId == FLOAT4OID)
+		{
+			if(!isNull)
+				result.d = DatumGetFloat4(value);
+			return result;
+		}
+		break;
+	case 'Z':
+		if(typeId == BOOLOID)
+		{
+			result.z = (!isNull && DatumGetBool(value)) ? JNI_TRUE : JNI_FALSE;
+			return result;
+		}
+		break;
+	}
+	ereport(ERROR, (
+		errcode(ERRCODE_DATATYPE_MISMATCH),
+		errmsg("a value of type with Oid %u cannot be read as Java %s",
+			typeId, javaType)));
+	return result; /* not reached */
+}
+
+static jvalue getPrimitive(
+	jlong _this, jlong _tupleDesc, jint index, jbooleanArray wasNull,
+	char kind)
+{
+	jvalue result;
+	Ptr2Long p2l;
+	HeapTuple self;
+	TupleDesc tupleDesc;
+
+	p2l.longVal = _this;
+	self = (HeapTuple)p2l.ptrVal;
+	p2l.longVal = _tupleDesc;
+	tupleDesc = (TupleDesc)p2l.ptrVal;
+	result.j = 0;
+
+	PG_TRY();
+	{
+		Oid typeId = SPI_gettypeid(tupleDesc, (int)index);
+		if(!OidIsValid(typeId))
+		{
+			Exception_throw(ERRCODE_INVALID_DESCRIPTOR_INDEX,
+				"Invalid attribute index \"%d\"", (int)index);
+		}
+		else
+		{
+			bool isNull = false;
+			Datum binVal = SPI_getbinval(self, tupleDesc, (int)index, &isNull);
+			result = Tuple_getPrimitive(binVal, isNull, typeId, kind, wasNull);
+		}
+	}
+	PG_CATCH();
+	{
+		Exception_throw_ERROR("SPI_getbinval");
+	}
+	PG_END_TRY();
+	return result;
+}
+
 /****************************************
  * JNI methods
  ****************************************/
@@ -165,3 +301,63 @@ Java_org_postgresql_pljava_internal_Tuple__1free(JNIEnv* env, jobject _this, jlo
 	heap_freetuple(p2l.ptrVal);
 	END_NATIVE
 }
+
+/*
+ * Class:     org_postgresql_pljava_internal_Tuple
+ * Method:    _getInt
+ * Signature: (JJI[Z)I
+ */
+JNIEXPORT jint JNICALL
+Java_org_postgresql_pljava_internal_Tuple__1getInt(JNIEnv* env, jclass cls, jlong _this, jlong _tupleDesc, jint index, jbooleanArray wasNull)
+{
+	jint result = 0;
+	BEGIN_NATIVE
+	result = getPrimitive(_this, _tupleDesc, index, wasNull, 'I').i;
+	END_NATIVE
+	return result;
+}
+
+/*
+ * Class:     org_postgresql_pljava_internal_Tuple
+ * Method:    _getLong
+ * Signature: (JJI[Z)J
+ */
+JNIEXPORT jlong JNICALL
+Java_org_postgresql_pljava_internal_Tuple__1getLong(JNIEnv* env, jclass cls, jlong _this, jlong _tupleDesc, jint index, jbooleanArray wasNull)
+{
+	jlong result = 0;
+	BEGIN_NATIVE
+	result = getPrimitive(_this, _tupleDesc, index, wasNull, 'J').j;
+	END_NATIVE
+	return result;
+}
+
+/*
+ * Class:     org_postgresql_pljava_internal_Tuple
+ * Method:    _getDouble
+ * Signature: (JJI[Z)D
+ */
+JNIEXPORT jdouble JNICALL
+Java_org_postgresql_pljava_internal_Tuple__1getDouble(JNIEnv* env, jclass cls, jlong _this, jlong _tupleDesc, jint index, jbooleanArray wasNull)
+{
+	jdouble result = 0;
+	BEGIN_NATIVE
+	result = getPrimitive(_this, _tupleDesc, index, wasNull, 'D').d;
+	END_NATIVE
+	return result;
+}
+
+/*
+ * Class:     org_postgresql_pljava_internal_Tuple
+ * Method:    _getBoolean
+ * Signature: (JJI[Z)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_postgresql_pljava_internal_Tuple__1getBoolean(JNIEnv* env, jclass cls, jlong _this, jlong _tupleDesc, jint index, jbooleanArray wasNull)
+{
+	jboolean result = 0;
+	BEGIN_NATIVE
+	result = getPrimitive(_this, _tupleDesc, index, wasNull, 'Z').z;
+	END_NATIVE
+	return result;
+}
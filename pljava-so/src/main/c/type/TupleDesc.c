@@ -13,20 +13,160 @@
 #include <postgres.h>
 #include <executor/spi.h>
 #include <funcapi.h>
+#include <utils/inval.h>
+#include <utils/lsyscache.h>
+#include <utils/rel.h>
+#include <utils/typcache.h>
 
 #include "org_postgresql_pljava_internal_TupleDesc.h"
 #include "pljava/Backend.h"
 #include "pljava/Exception.h"
 #include "pljava/Invocation.h"
+#include "pljava/HashMap.h"
+#include "pljava/Iterator.h"
 #include "pljava/type/Type_priv.h"
 #include "pljava/type/String.h"
 #include "pljava/type/Tuple.h"
 #include "pljava/type/TupleDesc.h"
 #include "pljava/type/Oid.h"
 
+#if PG_VERSION_NUM < 110000
+#define TupleDescAttr(tupdesc, i) ((tupdesc)->attrs[(i)])
+#endif
+
 static jclass    s_TupleDesc_class;
 static jmethodID s_TupleDesc_init;
 
+/*
+ * Java TupleDesc objects kept for reuse, for the descriptors of relations
+ * (keyed by relation Oid) and of row types (keyed by type Oid and typmod).
+ * Reuse saves copying and wrapping the descriptor on every call, and lets
+ * the Java object's own caches of column names and types live as long as
+ * the descriptor does.
+ *
+ * An entry is emptied, not removed, when the relcache entry for its relation
+ * (for a named row type, the type's relation) is invalidated. An anonymous
+ * record type registered with a typmod never changes, so its entry has no
+ * relation and stays.
+ */
+typedef struct
+{
+	Oid     relid;
+	jobject jtd;
+} CachedTupleDesc;
+
+static HashMap s_relationTupleDescs;
+static HashMap s_rowTypeTupleDescs;
+
+static void invalidateEntries(HashMap map, Oid relid)
+{
+	Entry entry;
+	Iterator itor = Iterator_create(map);
+	while((entry = Iterator_next(itor)) != 0)
+	{
+		CachedTupleDesc* ctd = (CachedTupleDesc*)Entry_getValue(entry);
+		if(ctd->jtd != 0 && ctd->relid != InvalidOid
+		&& (relid == InvalidOid || relid == ctd->relid))
+		{
+			JNI_deleteGlobalRef(ctd->jtd);
+			ctd->jtd = 0;
+		}
+	}
+	PgObject_free((PgObject)itor);
+}
+
+static void relcacheCallback(Datum arg, Oid relid)
+{
+	if(relid == InvalidOid)
+		invalidateEntries(s_relationTupleDescs, relid);
+	else
+	{
+		CachedTupleDesc* ctd =
+			(CachedTupleDesc*)HashMap_getByOid(s_relationTupleDescs, relid);
+		if(ctd != 0 && ctd->jtd != 0)
+		{
+			JNI_deleteGlobalRef(ctd->jtd);
+			ctd->jtd = 0;
+		}
+	}
+	invalidateEntries(s_rowTypeTupleDescs, relid);
+}
+
+/*
+ * Return a new local reference to the entry's Java TupleDesc, creating it
+ * from td first if the entry is empty.
+ */
+static jobject getCached(CachedTupleDesc* ctd, TupleDesc td)
+{
+	if(ctd->jtd == 0)
+	{
+		jobject local = TupleDesc_create(td);
+		ctd->jtd = JNI_newGlobalRef(local);
+		JNI_deleteLocalRef(local);
+	}
+	return JNI_newLocalRef(ctd->jtd);
+}
+
+static CachedTupleDesc* newEntry(Oid relid)
+{
+	CachedTupleDesc* ctd = (CachedTupleDesc*)MemoryContextAlloc(
+		TopMemoryContext, sizeof(CachedTupleDesc));
+	ctd->relid = relid;
+	ctd->jtd = 0;
+	return ctd;
+}
+
+jobject TupleDesc_forRelation(Relation rel)
+{
+	Oid relid = RelationGetRelid(rel);
+	CachedTupleDesc* ctd =
+		(CachedTupleDesc*)HashMap_getByOid(s_relationTupleDescs, relid);
+	if(ctd == 0)
+	{
+		ctd = newEntry(relid);
+		HashMap_putByOid(s_relationTupleDescs, relid, ctd);
+	}
+	return getCached(ctd, RelationGetDescr(rel));
+}
+
+jobject TupleDesc_forRowType(Oid typeId, int32 typmod)
+{
+	jobject result;
+	TupleDesc td;
+	char key[24];
+	CachedTupleDesc* ctd;
+
+	snprintf(key, sizeof key, "%u/%d", typeId, (int)typmod);
+	ctd = (CachedTupleDesc*)HashMap_getByString(s_rowTypeTupleDescs, key);
+	if(ctd != 0 && ctd->jtd != 0)
+		return JNI_newLocalRef(ctd->jtd);
+
+	if(ctd == 0)
+	{
+		Oid relid = InvalidOid;
+		if(typeId != RECORDOID)
+		{
+			/* A domain over a composite type has no relation of its own to
+			 * be invalidated by, so is not cached.
+			 */
+			relid = get_typ_typrelid(typeId);
+			if(relid == InvalidOid)
+			{
+				td = lookup_rowtype_tupdesc(typeId, typmod);
+				result = TupleDesc_create(td);
+				ReleaseTupleDesc(td);
+				return result;
+			}
+		}
+		ctd = newEntry(relid);
+		HashMap_putByString(s_rowTypeTupleDescs, key, ctd);
+	}
+	td = lookup_rowtype_tupdesc(typeId, typmod);
+	result = getCached(ctd, td);
+	ReleaseTupleDesc(td);
+	return result;
+}
+
 /*
  * org.postgresql.pljava.TupleDesc type.
  * This makes a non-reference-counted copy in JavaMemoryContext of the supplied
@@ -112,6 +252,11 @@ void TupleDesc_initialize(void)
 		Java_org_postgresql_pljava_internal_TupleDesc__1getOid
 		},
 		{
+		"_getColumns",
+		"(J[Ljava/lang/String;[I)V",
+		Java_org_postgresql_pljava_internal_TupleDesc__1getColumns
+		},
+		{
 		"_free",
 		"(J)V",
 		Java_org_postgresql_pljava_internal_TupleDesc__1free
@@ -122,6 +267,10 @@ void TupleDesc_initialize(void)
 	PgObject_registerNatives2(s_TupleDesc_class, methods);
 	s_TupleDesc_init = PgObject_getJavaMethod(s_TupleDesc_class, "<init>", "(JI)V");
 
+	s_relationTupleDescs = HashMap_create(13, TopMemoryContext);
+	s_rowTypeTupleDescs = HashMap_create(13, TopMemoryContext);
+	CacheRegisterRelcacheCallback(relcacheCallback, (Datum)0);
+
 	cls = JavaWrapperClass_alloc("type.TupleDesc");
 	cls->JNISignature = "Lorg/postgresql/pljava/internal/TupleDesc;";
 	cls->javaTypeName = "org.postgresql.pljava.internal.TupleDesc";
@@ -310,3 +459,36 @@ Java_org_postgresql_pljava_internal_TupleDesc__1getOid(JNIEnv* env, jclass cls,
 
 	return result;
 }
+
+/*
+ * Class:     org_postgresql_pljava_internal_TupleDesc
+ * Method:    _getColumns
+ * Signature: (J[Ljava/lang/String;[I)V
+ *
+ * Stores the name and type Oid of every column in the given arrays, which
+ * are as long as the descriptor has columns. A dropped column's type Oid is
+ * stored as zero.
+ */
+JNIEXPORT void JNICALL
+Java_org_postgresql_pljava_internal_TupleDesc__1getColumns(JNIEnv* env, jclass cls, jlong _this, jobjectArray names, jintArray typeIds)
+{
+	BEGIN_NATIVE
+	Ptr2Long p2l;
+	TupleDesc td;
+	jint* ids;
+	int idx;
+
+	p2l.longVal = _this;
+	td = (TupleDesc)p2l.ptrVal;
+	ids = JNI_getIntArrayElements(typeIds, 0);
+	for(idx = 0; idx < td->natts; ++idx)
+	{
+		Form_pg_attribute att = TupleDescAttr(td, idx);
+		jstring name = String_createJavaStringFromNTS(NameStr(att->attname));
+		JNI_setObjectArrayElement(names, idx, name);
+		JNI_deleteLocalRef(name);
+		ids[idx] = att->attisdropped ? 0 : (jint)att->atttypid;
+	}
+	JNI_releaseIntArrayElements(typeIds, ids, 0);
+	END_NATIVE
+}
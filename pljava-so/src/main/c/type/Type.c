@@ -62,8 +62,8 @@ static HashMap s_typeByOid;
 static HashMap s_obtainerByOid;
 static HashMap s_obtainerByJavaName;
 
-static jclass s_Map_class;
-static jmethodID s_Map_get;
+static jclass s_TypeMap_class;
+static jmethodID s_TypeMap_classFor;
 
 typedef struct CacheEntryData
 {
@@ -569,10 +569,9 @@ Type Type_fromOid(Oid typeId, jobject typeMap)
 
 	if(typeMap != 0)
 	{
-		jobject joid      = Oid_create(typeId);
-		jclass  typeClass = (jclass)JNI_callObjectMethod(typeMap, s_Map_get, joid);
+		jclass typeClass = (jclass)JNI_callObjectMethod(
+			typeMap, s_TypeMap_classFor, (jint)typeId);
 
-		JNI_deleteLocalRef(joid);
 		if(typeClass != 0)
 		{
 			TupleDesc tupleDesc = lookup_rowtype_tupdesc_noerror(typeId, -1, true);
@@ -817,6 +816,7 @@ extern void TupleTable_initialize(void);
 extern void Composite_initialize(void);
 
 extern void pljava_SQLXMLImpl_initialize(void);
+extern void pljava_PrimitiveBuffer_initialize(void);
 
 extern void Type_initialize(void);
 void Type_initialize(void)
@@ -861,9 +861,10 @@ void Type_initialize(void)
 
 	Composite_initialize();
 	pljava_SQLXMLImpl_initialize();
+	pljava_PrimitiveBuffer_initialize();
 
-	s_Map_class = JNI_newGlobalRef(PgObject_getJavaClass("java/util/Map"));
-	s_Map_get = PgObject_getJavaMethod(s_Map_class, "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
+	s_TypeMap_class = JNI_newGlobalRef(PgObject_getJavaClass("org/postgresql/pljava/sqlj/TypeMap"));
+	s_TypeMap_classFor = PgObject_getJavaMethod(s_TypeMap_class, "classFor", "(I)Ljava/lang/Class;");
 
 	s_Iterator_class = JNI_newGlobalRef(PgObject_getJavaClass("java/util/Iterator"));
 	s_Iterator_hasNext = PgObject_getJavaMethod(s_Iterator_class, "hasNext", "()Z");
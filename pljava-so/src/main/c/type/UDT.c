@@ -26,6 +26,8 @@
 #include <utils/bytea.h>
 #endif
 
+static jclass s_UDTCodec_class;
+
 static jobject coerceScalarDatum(UDT self, Datum arg)
 {
 	jobject result;
@@ -75,10 +77,23 @@ static jobject coerceScalarDatum(UDT self, Datum arg)
 		}
 		result = JNI_newObject(javaClass, self->init);
 
-		inputStream = SQLInputFromChunk_create(data, dataLen,
+		inputStream = SQLInputFromChunk_obtain(data, dataLen,
 			isJavaBasedScalar);
-		JNI_callVoidMethod(result, self->readSQL, inputStream, self->sqlTypeName);
-		SQLInputFromChunk_close(inputStream);
+		PG_TRY();
+		{
+			if(self->hasCodec)
+				SQLInputFromChunk_readCodec(inputStream, result);
+			else
+				JNI_callVoidMethod(result, self->readSQL, inputStream,
+					self->sqlTypeName);
+		}
+		PG_CATCH();
+		{
+			SQLInputFromChunk_abandon(inputStream);
+			PG_RE_THROW();
+		}
+		PG_END_TRY();
+		SQLInputFromChunk_release(inputStream);
 	}
 	return result;
 }
@@ -112,53 +127,91 @@ static Datum coerceScalarObject(UDT self, jobject value)
 	{
 		jobject outputStream;
 		StringInfoData buffer;
+		char* image;
+		int32 imageLen;
 		bool passByValue = Type_isByValue((Type)self);
 
-		MemoryContext currCtx = Invocation_switchToUpperContext();
-		initStringInfo(&buffer);
-		MemoryContextSwitchTo(currCtx); /* buffer remembers its context */
-
-		if(dataLen < 0)
-			/*
-			 * Reserve space for an int32 at the beginning. We are building
-			 * a varlena
+		if(dataLen >= 0 && 0 != (outputStream =
+			SQLOutputToChunk_obtain(dataLen, isJavaBasedScalar, &image)))
+		{
+			/* A fixed-length image, written to the pooled buffer.
 			 */
-			appendBinaryStringInfo(&buffer, (char*)&dataLen, sizeof(int32));
+			PG_TRY();
+			{
+				if(self->hasCodec)
+					SQLOutputToChunk_writeCodec(outputStream, value, dataLen);
+				else
+					JNI_callVoidMethod(value, self->writeSQL, outputStream);
+			}
+			PG_CATCH();
+			{
+				SQLOutputToChunk_abandon(outputStream);
+				PG_RE_THROW();
+			}
+			PG_END_TRY();
+			imageLen = SQLOutputToChunk_release(outputStream);
+			if(!passByValue && dataLen == imageLen)
+			{
+				MemoryContext currCtx = Invocation_switchToUpperContext();
+				char* copy = palloc(dataLen);
+				MemoryContextSwitchTo(currCtx);
+				memcpy(copy, image, dataLen);
+				image = copy;
+			}
+		}
 		else
-			enlargeStringInfo(&buffer, dataLen);
+		{
+			MemoryContext currCtx = Invocation_switchToUpperContext();
+			initStringInfo(&buffer);
+			MemoryContextSwitchTo(currCtx); /* buffer remembers its context */
+
+			if(dataLen < 0)
+				/*
+				 * Reserve space for an int32 at the beginning. We are building
+				 * a varlena
+				 */
+				appendBinaryStringInfo(&buffer, (char*)&dataLen, sizeof(int32));
+			else
+				enlargeStringInfo(&buffer, dataLen);
 
-		outputStream = SQLOutputToChunk_create(&buffer, isJavaBasedScalar);
-		JNI_callVoidMethod(value, self->writeSQL, outputStream);
-		SQLOutputToChunk_close(outputStream);
+			outputStream = SQLOutputToChunk_create(&buffer, isJavaBasedScalar);
+			if(self->hasCodec)
+				SQLOutputToChunk_writeCodec(outputStream, value, dataLen);
+			else
+				JNI_callVoidMethod(value, self->writeSQL, outputStream);
+			SQLOutputToChunk_close(outputStream);
+			image = buffer.data;
+			imageLen = buffer.len;
+		}
 
 		if(dataLen < 0)
 		{
 			/* Assign the correct length.
 			 */
 #if PG_VERSION_NUM < 80300
-			VARATT_SIZEP(buffer.data) = buffer.len;
+			VARATT_SIZEP(image) = imageLen;
 #else
-			SET_VARSIZE(buffer.data, buffer.len);
+			SET_VARSIZE(image, imageLen);
 #endif
 		}
-		else if(dataLen != buffer.len)
+		else if(dataLen != imageLen)
 		{
 			ereport(ERROR, (
 				errcode(ERRCODE_CANNOT_COERCE),
 				errmsg("UDT for Oid %d produced image with incorrect size. Expected %d, was %d",
-					Type_getOid((Type)self), dataLen, buffer.len)));
+					Type_getOid((Type)self), dataLen, imageLen)));
 		}
 		if (passByValue) {
 			memset(&result, 0, SIZEOF_DATUM);
 			/* pass by value data is stored in the least
 			 * significant bits of a Datum. */
 #ifdef WORDS_BIGENDIAN
-			memcpy(&result + SIZEOF_DATUM - dataLen, buffer.data, dataLen);
+			memcpy(&result + SIZEOF_DATUM - dataLen, image, dataLen);
 #else
-			memcpy(&result, buffer.data, dataLen);
+			memcpy(&result, image, dataLen);
 #endif
 		} else {
-			result = PointerGetDatum(buffer.data);
+			result = PointerGetDatum(image);
 		}
 
 	}
@@ -462,6 +515,18 @@ UDT UDT_registerUDT(jclass clazz, Oid typeId, Form_pg_type pgType, bool hasTuple
 	udt->hasTupleDesc = hasTupleDesc;
 	udt->readSQL = PgObject_getJavaMethod(clazz, "readSQL", "(Ljava/sql/SQLInput;Ljava/lang/String;)V");
 	udt->writeSQL = PgObject_getJavaMethod(clazz, "writeSQL", "(Ljava/sql/SQLOutput;)V");
+
+	/* A scalar of fixed length may bypass readSQL and writeSQL, if its class
+	 * implements org.postgresql.pljava.UDTCodec.
+	 */
+	udt->hasCodec = false;
+	if(!hasTupleDesc && pgType->typlen > 0)
+	{
+		if(s_UDTCodec_class == 0)
+			s_UDTCodec_class = JNI_newGlobalRef(
+				PgObject_getJavaClass("org/postgresql/pljava/UDTCodec"));
+		udt->hasCodec = JNI_isAssignableFrom(clazz, s_UDTCodec_class);
+	}
 	Type_registerType(className, (Type)udt);
 	return udt;
 }
@@ -29,6 +29,12 @@ void Backend_setJavaSecurity(bool trusted);
 
 int Backend_setJavaLogLevel(int logLevel);
 
+/*
+ * Send any Java log records queued by ELogHandler (when pljava.log_queue_size
+ * is positive) to elog. Does nothing if records are not being queued.
+ */
+void Backend_drainJavaLog(void);
+
 #ifdef PG_GETCONFIGOPTION
 #error The macro PG_GETCONFIGOPTION needs to be renamed.
 #endif
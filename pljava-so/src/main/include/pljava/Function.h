@@ -38,6 +38,13 @@ extern "C" {
  */
 extern void Function_clearFunctionCache(void);
 
+/*
+ * Clear only the cached functions whose classes were loaded by one of the
+ * class loaders in the given array. This is called after a replace_jar that
+ * changed a jar on the class path of only some schemas.
+ */
+extern void Function_clearFunctionCacheFor(jobjectArray loaders);
+
 /*
  * Get a Function using a function Oid. If the function is not found, one
  * will be created based on the class and method name denoted in the "AS"
@@ -77,6 +77,8 @@ extern jobject      JNI_callStaticObjectMethodLocked(jclass clazz, jmethodID met
 extern jobject      JNI_callStaticObjectMethodLockedV(jclass clazz, jmethodID methodID, va_list args);
 extern void         JNI_callStaticVoidMethodLocked(jclass clazz, jmethodID methodID, ...);
 extern void         JNI_callStaticVoidMethodLockedV(jclass clazz, jmethodID methodID, va_list args);
+extern jdouble      JNI_callDoubleMethodLocked(jobject object, jmethodID methodID, ...);
+extern jdouble      JNI_callDoubleMethodLockedV(jobject object, jmethodID methodID, va_list args);
 extern jint         JNI_callIntMethodLocked(jobject object, jmethodID methodID, ...);
 extern jint         JNI_callIntMethodLockedV(jobject object, jmethodID methodID, va_list args);
 extern jlong        JNI_callLongMethodLocked(jobject object, jmethodID methodID, ...);
@@ -160,6 +162,7 @@ extern jobject      JNI_getStaticObjectField(jclass clazz, jfieldID field);
 extern const char*  JNI_getStringUTFChars(jstring string, jboolean* isCopy);
 extern jboolean     JNI_hasNullArrayElement(jobjectArray array);
 extern jboolean     JNI_isCallingJava(void);
+extern jboolean     JNI_isAssignableFrom(jclass clazz1, jclass clazz2);
 extern jboolean     JNI_isInstanceOf(jobject obj, jclass clazz);
 extern jboolean     JNI_isSameObject(jobject obj1, jobject obj2);
 extern jbyteArray   JNI_newByteArray(jsize length);
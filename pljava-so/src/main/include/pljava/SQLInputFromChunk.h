@@ -27,6 +27,24 @@ jobject SQLInputFromChunk_create(void* data, size_t dataSize,
 	bool isJavaBasedScalar);
 void SQLInputFromChunk_close(jobject input);
 
+/*
+ * Have value, a newly constructed instance of a UDT class implementing
+ * org.postgresql.pljava.UDTCodec, read itself directly from the input's buffer.
+ */
+void SQLInputFromChunk_readCodec(jobject input, jobject value);
+
+/*
+ * Obtain a reader over a copy of the data, reusing a pooled reader when the
+ * data is small enough and the pooled one is not already in use; otherwise a
+ * new reader is created as by SQLInputFromChunk_create. Either way, the
+ * reader must be passed to SQLInputFromChunk_release when done, or (only on
+ * the error path, without calling into Java) to SQLInputFromChunk_abandon.
+ */
+jobject SQLInputFromChunk_obtain(void* data, size_t dataSize,
+	bool isJavaBasedScalar);
+void SQLInputFromChunk_release(jobject input);
+void SQLInputFromChunk_abandon(jobject input);
+
 #ifdef __cplusplus
 } /* end of extern "C" declaration */
 #endif
@@ -27,6 +27,27 @@ extern "C" {
 jobject SQLOutputToChunk_create(StringInfo buffer, bool isJavaBasedScalar);
 void SQLOutputToChunk_close(jobject output);
 
+/*
+ * Have value, an instance of a UDT class implementing
+ * org.postgresql.pljava.UDTCodec, write itself directly to the output's buffer
+ * as an image of exactly the given length.
+ */
+void SQLOutputToChunk_writeCodec(jobject output, jobject value, int32 length);
+
+/*
+ * Obtain a pooled writer for a fixed-length image of exactly the given length,
+ * setting *data to where the image will be written. Returns null if the
+ * length is too large or the pooled writer is already in use, and the caller
+ * must then use SQLOutputToChunk_create. When done, SQLOutputToChunk_release
+ * returns the number of bytes written, which remain at *data only until the
+ * writer is next obtained; on the error path, without calling into Java, use
+ * SQLOutputToChunk_abandon instead.
+ */
+jobject SQLOutputToChunk_obtain(int32 length, bool isJavaBasedScalar,
+	char** data);
+int32 SQLOutputToChunk_release(jobject output);
+void SQLOutputToChunk_abandon(jobject output);
+
 #ifdef __cplusplus
 } /* end of extern "C" declaration */
 #endif
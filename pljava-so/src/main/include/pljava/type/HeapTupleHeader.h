@@ -37,6 +37,12 @@ extern jobject HeapTupleHeader_getTupleDesc(HeapTupleHeader ht);
 extern jobject HeapTupleHeader_getObject(
 	JNIEnv* env, jlong hth, jlong jtd, jint attrNo, jclass rqcls);
 
+/*
+ * Return a column's value as a primitive, as for Tuple_getPrimitive.
+ */
+extern jvalue HeapTupleHeader_getPrimitive(JNIEnv* env, jlong hth, jlong jtd,
+	jint attrNo, jbooleanArray wasNull, char kind);
+
 extern void HeapTupleHeader_free(JNIEnv* env, jlong hth);
 
 #ifdef __cplusplus
@@ -43,6 +43,16 @@ extern jobjectArray Tuple_createArray(HeapTuple* tuples, jint size, bool mustCop
 extern jobject Tuple_getObject(
 	TupleDesc tupleDesc, HeapTuple tuple, int index, jclass rqcls);
 
+/*
+ * Convert the value of a column of type typeId to the primitive Java type
+ * given by kind, without creating any Java object: 'I' (int) for int2 and
+ * int4, 'J' (long) for int2, int4, and int8, 'D' (double) for float4 and
+ * float8, 'Z' (boolean) for bool. Any other type raises an ERROR. Also stores
+ * isNull in the first element of wasNull; a null value converts to zero.
+ */
+extern jvalue Tuple_getPrimitive(
+	Datum value, bool isNull, Oid typeId, char kind, jbooleanArray wasNull);
+
 #ifdef __cplusplus
 }
 #endif
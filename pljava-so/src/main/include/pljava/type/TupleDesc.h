@@ -15,6 +15,7 @@ extern "C" {
 #endif
 
 #include <access/tupdesc.h>
+#include <utils/relcache.h>
 
 /********************************************************************
  * The TupleDesc java class extends the NativeStruct and provides JNI
@@ -36,6 +37,14 @@ extern Type TupleDesc_getColumnType(TupleDesc tupleDesc, int index);
 extern jobject TupleDesc_create(TupleDesc tDesc);
 extern jobject TupleDesc_internalCreate(TupleDesc tDesc);
 
+/*
+ * Return the org.postgresql.pljava.TupleDesc instance for the descriptor of
+ * a relation, or of a row type, reusing the instance returned before unless
+ * the relation has since been invalidated in the relcache.
+ */
+extern jobject TupleDesc_forRelation(Relation rel);
+extern jobject TupleDesc_forRowType(Oid typeId, int32 typmod);
+
 #ifdef __cplusplus
 }
 #endif
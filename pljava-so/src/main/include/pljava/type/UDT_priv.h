@@ -36,6 +36,7 @@ struct UDT_
 	jmethodID toString;
 	jmethodID readSQL;
 	jmethodID writeSQL;
+	bool      hasCodec;
 };
 
 extern Datum _UDT_coerceObject(Type self, jobject jstr);
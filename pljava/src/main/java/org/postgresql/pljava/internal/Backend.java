@@ -242,6 +242,24 @@ public class Backend
 
 	public static void addClassImages(int jarId, String urlString)
 	throws SQLException
+	{
+		readClassImages(jarId, urlString, false);
+	}
+
+	/**
+	 * Like {@link #addClassImages addClassImages}, but for a jar that already
+	 * has entries, leaving those that are unchanged in place.
+	 * @return Whether any entry was added, changed, or removed.
+	 */
+	public static boolean replaceClassImages(int jarId, String urlString)
+	throws SQLException
+	{
+		return readClassImages(jarId, urlString, true);
+	}
+
+	private static boolean readClassImages(
+		int jarId, String urlString, boolean replace)
+	throws SQLException
 	{
 		InputStream urlStream = null;
 		boolean wasTrusted = (System.getSecurityManager() == s_trustedSecurityManager);
@@ -256,7 +274,10 @@ public class Backend
 			uc.connect();
 			int sz = uc.getContentLength(); // once java6 obsolete, use ...Long
 			urlStream = uc.getInputStream();
+			if(replace)
+				return Commands.replaceClassImages(jarId, urlStream, sz);
 			Commands.addClassImages(jarId, urlStream, sz);
+			return true;
 		}
 		catch(IOException e)
 		{
@@ -271,6 +292,35 @@ public class Backend
 		}
 	}
 
+	/**
+	 * Lift the trusted-language file restrictions, if in effect, so that
+	 * PL/Java's own code can reach files it manages (such as the
+	 * {@link ClassImageCache}). Every call must be paired, in a
+	 * {@code finally} block, with a call to {@link #resumeTrusted
+	 * resumeTrusted} passing the value returned here.
+	 * @return whether the trusted security manager was in effect.
+	 */
+	static boolean suspendTrusted()
+	{
+		boolean wasTrusted =
+			(System.getSecurityManager() == s_trustedSecurityManager);
+		if(wasTrusted)
+			setTrusted(false);
+		return wasTrusted;
+	}
+
+	/**
+	 * Restore the trusted-language restrictions lifted by
+	 * {@link #suspendTrusted suspendTrusted}.
+	 * @param wasTrusted the value returned by the matching
+	 * {@code suspendTrusted} call.
+	 */
+	static void resumeTrusted(boolean wasTrusted)
+	{
+		if(wasTrusted)
+			setTrusted(true);
+	}
+
 	public static void clearFunctionCache()
 	{
 		synchronized(THREADLOCK)
@@ -279,6 +329,18 @@ public class Backend
 		}
 	}
 
+	/**
+	 * Clear only the cached functions whose classes were loaded by one of
+	 * <em>loaders</em>, keeping the rest.
+	 */
+	public static void clearFunctionCache(ClassLoader[] loaders)
+	{
+		synchronized(THREADLOCK)
+		{
+			_clearFunctionCacheFor(loaders);
+		}
+	}
+
 	public static boolean isCreatingExtension()
 	{
 		synchronized(THREADLOCK)
@@ -327,5 +389,6 @@ public class Backend
 	private native static int  _getStatementCacheSize();
 	private native static void _log(int logLevel, String str);
 	private native static void _clearFunctionCache();
+	private native static void _clearFunctionCacheFor(ClassLoader[] loaders);
 	private native static boolean _isCreatingExtension();
 }
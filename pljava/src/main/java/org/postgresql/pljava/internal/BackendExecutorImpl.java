@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.postgresql.pljava.BackendExecutor;
+
+/**
+ * The session's {@link BackendExecutor}: a thread pool with one thread per
+ * processor, plus a queue of tasks for the backend thread, which runs them
+ * whenever it waits for the pool.
+ *<p>
+ * Waiting on the backend thread is done by running queued tasks, then
+ * parking until something happens that the waiter may care about: a task
+ * is queued for the backend, a pool task completes, or the pool terminates.
+ * Each of those unparks the backend thread, so no wakeup is lost between the
+ * check and the park.
+ */
+class BackendExecutorImpl extends ThreadPoolExecutor
+implements BackendExecutor
+{
+	private static BackendExecutorImpl s_instance;
+
+	private final Thread m_backendThread;
+
+	private final ConcurrentLinkedQueue<FutureTask<?>> m_backendTasks =
+		new ConcurrentLinkedQueue<FutureTask<?>>();
+
+	/**
+	 * Return the session's executor, making it (again, if it has been shut
+	 * down) if need be, which can only be done on the backend thread.
+	 */
+	static synchronized BackendExecutorImpl getInstance()
+	{
+		if(s_instance == null || s_instance.isShutdown())
+		{
+			if(!Session.isBackendThread())
+				throw new IllegalStateException(
+					"The session executor must be obtained first on the " +
+					"backend thread");
+			s_instance = new BackendExecutorImpl(Thread.currentThread());
+		}
+		return s_instance;
+	}
+
+	private BackendExecutorImpl(Thread backendThread)
+	{
+		super(Runtime.getRuntime().availableProcessors(),
+			Runtime.getRuntime().availableProcessors(),
+			60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new WorkerFactory());
+		allowCoreThreadTimeOut(true);
+		m_backendThread = backendThread;
+	}
+
+	@Override
+	public <T> Future<T> submitToBackend(Callable<T> task)
+	{
+		FutureTask<T> f = new FutureTask<T>(task);
+		if(Thread.currentThread() == m_backendThread)
+			f.run();
+		else
+		{
+			m_backendTasks.add(f);
+			LockSupport.unpark(m_backendThread);
+		}
+		return f;
+	}
+
+	@Override
+	public void runBackendTasks()
+	{
+		if(Thread.currentThread() != m_backendThread)
+			throw new IllegalStateException(
+				"runBackendTasks called other than on the backend thread");
+		FutureTask<?> f;
+		while(null != (f = m_backendTasks.poll()))
+			f.run();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+	throws InterruptedException
+	{
+		if(Thread.currentThread() != m_backendThread)
+			return super.awaitTermination(timeout, unit);
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for(;;)
+		{
+			runBackendTasks();
+			if(isTerminated())
+				return true;
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0)
+				return false;
+			park(remaining);
+		}
+	}
+
+	@Override
+	protected void terminated()
+	{
+		LockSupport.unpark(m_backendThread);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable)
+	{
+		return new PoolTask<T>(callable);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value)
+	{
+		return new PoolTask<T>(runnable, value);
+	}
+
+	private void park(long nanos) throws InterruptedException
+	{
+		LockSupport.parkNanos(this, nanos);
+		if(Thread.interrupted())
+			throw new InterruptedException();
+	}
+
+	/**
+	 * A task for the pool, whose {@code get}, on the backend thread, runs
+	 * the backend tasks while it waits.
+	 */
+	private class PoolTask<T> extends FutureTask<T>
+	{
+		PoolTask(Callable<T> callable)
+		{
+			super(callable);
+		}
+
+		PoolTask(Runnable runnable, T value)
+		{
+			super(runnable, value);
+		}
+
+		@Override
+		protected void done()
+		{
+			LockSupport.unpark(m_backendThread);
+		}
+
+		@Override
+		public T get() throws InterruptedException, ExecutionException
+		{
+			if(Thread.currentThread() == m_backendThread)
+			{
+				runBackendTasks();
+				while(!isDone())
+				{
+					park(Long.MAX_VALUE);
+					runBackendTasks();
+				}
+			}
+			return super.get();
+		}
+
+		@Override
+		public T get(long timeout, TimeUnit unit)
+		throws InterruptedException, ExecutionException, TimeoutException
+		{
+			if(Thread.currentThread() == m_backendThread)
+			{
+				long deadline = System.nanoTime() + unit.toNanos(timeout);
+				runBackendTasks();
+				while(!isDone())
+				{
+					long remaining = deadline - System.nanoTime();
+					if(remaining <= 0)
+						throw new TimeoutException();
+					park(remaining);
+					runBackendTasks();
+				}
+			}
+			return super.get(timeout, unit);
+		}
+	}
+
+	/**
+	 * Makes daemon threads, so a worker left running does not keep the JVM
+	 * from exiting with the backend.
+	 */
+	private static class WorkerFactory implements ThreadFactory
+	{
+		private final AtomicInteger m_count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r,
+				"PL/Java worker " + m_count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
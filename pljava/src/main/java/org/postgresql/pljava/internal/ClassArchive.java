@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.postgresql.pljava.jdbc.SPIReadOnlyControl;
+import org.postgresql.pljava.jdbc.SQLUtils;
+
+/**
+ * Prepares the inputs for a HotSpot application class data sharing archive
+ * that includes classes installed in the database with
+ * {@code sqlj.install_jar}.
+ *<p>
+ * HotSpot (OpenJDK 10 and later, on 64-bit Linux and macOS) can archive
+ * classes that will be defined by a custom class loader, if the class list
+ * used to dump the archive names the jar each class comes from. At run time,
+ * a class passed to {@code defineClass} is taken from the archive when its
+ * name, size, and CRC match the archived one, which is the case for images
+ * PL/Java's {@link org.postgresql.pljava.sqlj.Loader Loader} reads from
+ * {@code sqlj.jar_entry}.
+ *<p>
+ * {@link #build build} writes, under {@code pljava/cds} in the data directory,
+ * a jar of the class images visible on a schema's classpath and a class list
+ * in the format {@code -XX:SharedClassListFile} expects. The archive itself
+ * has to be written by a JVM started with {@code -Xshare:dump}, which the
+ * returned string of VM options arranges when set as {@code pljava.vmoptions}
+ * in a new session. The archive is written where PL/Java's native code looks
+ * for it at JVM startup, so no further setting is needed to use it.
+ */
+public class ClassArchive
+{
+	private ClassArchive()
+	{
+	}
+
+	/**
+	 * Write the class list and jar for the classes on the classpath of
+	 * <em>schemaName</em>, and return the VM options that will dump an
+	 * archive from them.
+	 * @param schemaName Schema whose classpath should be archived.
+	 * @return VM options to set in a new session to write the archive.
+	 * @throws SQLException if the invoking user is not a superuser, or the
+	 * files cannot be written.
+	 */
+	public static String build(String schemaName) throws SQLException
+	{
+		if(!AclId.getOuterUser().isSuperuser())
+			throw new SQLSyntaxErrorException(
+				"Only a super user can build a class archive", "42501");
+
+		if(schemaName == null || schemaName.length() == 0)
+			schemaName = "public";
+		else
+			schemaName = schemaName.toLowerCase();
+
+		/*
+		 * Read the entries so that the one with highest prio is read last,
+		 * replacing any of the same name read earlier.
+		 */
+		Map<String,byte[]> images = new LinkedHashMap<>();
+		try(PreparedStatement stmt = SQLUtils.getDefaultConnection()
+			.prepareStatement(
+				"SELECT e.entryName, e.entryImage" +
+				" FROM" +
+				"  sqlj.classpath_entry c" +
+				"  INNER JOIN sqlj.jar_entry e" +
+				"  ON c.jarId OPERATOR(pg_catalog.=) e.jarId" +
+				" WHERE c.schemaName OPERATOR(pg_catalog.=) ?" +
+				"  AND e.entryName LIKE '%.class'" +
+				" ORDER BY c.ordinal DESC"))
+		{
+			stmt.unwrap(SPIReadOnlyControl.class).clearReadOnly();
+			stmt.setString(1, schemaName);
+			try(ResultSet rs = stmt.executeQuery())
+			{
+				while(rs.next())
+				{
+					String entryName = rs.getString(1);
+					String className = entryName.substring(
+						0, entryName.length() - ".class".length());
+					images.put(className, rs.getBytes(2));
+				}
+			}
+		}
+
+		String dboid = Long.toString(ClassImageCache.currentDatabaseOid());
+		File dir = new File(ClassImageCache.pljavaDataDirectory(), "cds");
+		File jar = new File(dir, dboid + ".jar");
+		File classList = new File(dir, dboid + ".classlist");
+		File archive = new File(dir, dboid + ".jsa");
+
+		boolean wasTrusted = Backend.suspendTrusted();
+		try
+		{
+			Files.createDirectories(dir.toPath());
+			writeJar(jar, images);
+			writeClassList(classList, images, jar.getPath());
+		}
+		catch(IOException e)
+		{
+			throw new SQLException(
+				"I/O exception writing class archive inputs: " +
+				e.getMessage(), "58030", e);
+		}
+		finally
+		{
+			Backend.resumeTrusted(wasTrusted);
+		}
+
+		return "-Xshare:dump" +
+			" -XX:SharedClassListFile=" + classList.getPath() +
+			" -XX:SharedArchiveFile=" + archive.getPath();
+	}
+
+	private static void writeJar(File jar, Map<String,byte[]> images)
+	throws IOException
+	{
+		try(JarOutputStream jos = new JarOutputStream(
+			new FileOutputStream(jar)))
+		{
+			for(Map.Entry<String,byte[]> me : images.entrySet())
+			{
+				jos.putNextEntry(new JarEntry(me.getKey() + ".class"));
+				jos.write(me.getValue());
+				jos.closeEntry();
+			}
+		}
+	}
+
+	/**
+	 * Write a class list giving every class an id, preceded by the ids of its
+	 * superclass and interfaces. Classes from the jar are marked with their
+	 * source and supertypes, as HotSpot requires for classes that will be
+	 * defined by a custom loader; supertypes not in the jar are listed by
+	 * name alone, to be loaded from the JVM's own class path at dump time.
+	 */
+	private static void writeClassList(
+		File classList, Map<String,byte[]> images, String source)
+	throws IOException
+	{
+		Map<String,String[]> supers = new HashMap<>();
+		for(Map.Entry<String,byte[]> me : images.entrySet())
+			supers.put(me.getKey(), superTypes(me.getValue()));
+
+		Map<String,Integer> ids = new HashMap<>();
+		int[] nextId = new int[1];
+		try(Writer w = new OutputStreamWriter(
+			new FileOutputStream(classList), UTF_8))
+		{
+			for(String className : images.keySet())
+				emit(w, className, supers, ids, nextId, source);
+		}
+	}
+
+	/**
+	 * Write the class list line for one class after those of its supertypes,
+	 * returning its id, or -1 if it cannot be listed.
+	 */
+	private static int emit(Writer w, String className,
+		Map<String,String[]> supers, Map<String,Integer> ids, int[] nextId,
+		String source)
+	throws IOException
+	{
+		Integer known = ids.get(className);
+		if(null != known)
+			return known;
+
+		String[] st = supers.get(className);
+		if(null == st)
+		{
+			int id = nextId[0]++;
+			ids.put(className, id);
+			w.write(className + " id: " + id + "\n");
+			return id;
+		}
+
+		/*
+		 * Mark the class as unlistable while visiting its supertypes; a class
+		 * file that is its own supertype is malformed, but must not loop.
+		 */
+		ids.put(className, -1);
+		int[] superIds = new int[st.length];
+		for(int i = 0; i < st.length; ++i)
+			if(-1 == (superIds[i] =
+				emit(w, st[i], supers, ids, nextId, source)))
+				return -1;
+
+		int id = nextId[0]++;
+		ids.put(className, id);
+		StringBuilder sb = new StringBuilder(className);
+		sb.append(" id: ").append(id).append(" super: ").append(superIds[0]);
+		if(superIds.length > 1)
+		{
+			sb.append(" interfaces:");
+			for(int i = 1; i < superIds.length; ++i)
+				sb.append(' ').append(superIds[i]);
+		}
+		sb.append(" source: ").append(source).append('\n');
+		w.write(sb.toString());
+		return id;
+	}
+
+	/**
+	 * Return the internal names of the superclass (first) and the interfaces
+	 * of a class, read from its class file image.
+	 */
+	private static String[] superTypes(byte[] image) throws IOException
+	{
+		DataInputStream in =
+			new DataInputStream(new ByteArrayInputStream(image));
+		if(0xCAFEBABE != in.readInt())
+			throw new IOException("not a class file");
+		in.readUnsignedShort(); // minor
+		in.readUnsignedShort(); // major
+		int cpCount = in.readUnsignedShort();
+		String[] utf8 = new String[cpCount];
+		int[] classNameIndex = new int[cpCount];
+		for(int i = 1; i < cpCount; ++i)
+		{
+			int tag = in.readUnsignedByte();
+			switch(tag)
+			{
+			case 1:  // Utf8
+				utf8[i] = in.readUTF();
+				break;
+			case 7:  // Class
+				classNameIndex[i] = in.readUnsignedShort();
+				break;
+			case 8:  // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				in.skipBytes(2);
+				break;
+			case 15: // MethodHandle
+				in.skipBytes(3);
+				break;
+			case 3:  // Integer
+			case 4:  // Float
+			case 9:  // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				in.skipBytes(4);
+				break;
+			case 5:  // Long
+			case 6:  // Double
+				in.skipBytes(8);
+				++ i;
+				break;
+			default:
+				throw new IOException("bad constant pool tag " + tag);
+			}
+		}
+		in.readUnsignedShort(); // access flags
+		in.readUnsignedShort(); // this_class
+		int superClass = in.readUnsignedShort();
+		int nInterfaces = in.readUnsignedShort();
+		String[] result = new String[1 + nInterfaces];
+		result[0] = 0 == superClass
+			? "java/lang/Object" : utf8[classNameIndex[superClass]];
+		for(int i = 1; i <= nInterfaces; ++i)
+			result[i] = utf8[classNameIndex[in.readUnsignedShort()]];
+		return result;
+	}
+}
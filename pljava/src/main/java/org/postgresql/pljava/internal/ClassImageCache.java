@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import org.postgresql.pljava.jdbc.SPIReadOnlyControl;
+import org.postgresql.pljava.jdbc.SQLUtils;
+
+/**
+ * Optional cache, shared by all backends of a cluster, of the class images
+ * stored in {@code sqlj.jar_entry}.
+ *<p>
+ * The cache is enabled by setting the system property
+ * {@code org.postgresql.pljava.classcache} to {@code true} (for example, with
+ * {@code -Dorg.postgresql.pljava.classcache=true} in {@code pljava.vmoptions}).
+ * It keeps one file per installed jar, in
+ * {@code pljava/classcache/}<em>database oid</em> under the data directory,
+ * holding the images of the jar's {@code .class} entries. The first backend
+ * to need a class from a jar writes the file in a single scan of
+ * {@code sqlj.jar_entry}; later backends memory-map it and define classes
+ * directly from the mapped bytes, with no per-class query.
+ *<p>
+ * Each file carries a token: a digest of the {@code entryId} and
+ * {@code entryName} of every entry in the jar, in {@code entryId} order.
+ * Because {@code replace_jar} deletes and reinserts every entry, giving each a
+ * new {@code entryId}, a file built from an older version of the jar has a
+ * token that no longer matches the one {@link org.postgresql.pljava.sqlj.Loader
+ * Loader} computes from the current entries, and it is simply rebuilt. The
+ * management commands also delete the file for a jar that is installed,
+ * replaced, or removed, so stale files do not accumulate. The cache is per jar,
+ * so {@code set_classpath} has nothing in it to invalidate.
+ *<p>
+ * A file is written under a temporary name and renamed into place, so a
+ * backend never maps a partly written file. Any I/O problem with the cache is
+ * logged and otherwise ignored, leaving the caller to load the class through
+ * SPI as usual.
+ */
+public class ClassImageCache
+{
+	private static final Logger s_logger =
+		Logger.getLogger(ClassImageCache.class.getName());
+
+	private static final String ENABLE_PROPERTY =
+		"org.postgresql.pljava.classcache";
+
+	private static final int MAGIC = 0x504A4349; // "PJCI"
+
+	private static final int VERSION = 1;
+
+	private static final int TOKEN_LENGTH = 20; // SHA-1
+
+	private static final int INDEX_ENTRY_LENGTH = 12; // entryId, offset, length
+
+	private static final int HEADER_LENGTH = 12 + TOKEN_LENGTH;
+
+	private static final boolean s_enabled =
+		Boolean.getBoolean(ENABLE_PROPERTY);
+
+	private static File s_directory;
+
+	private ClassImageCache()
+	{
+	}
+
+	/**
+	 * Whether the cache has been enabled with the
+	 * {@code org.postgresql.pljava.classcache} property.
+	 */
+	public static boolean isEnabled()
+	{
+		return s_enabled;
+	}
+
+	/**
+	 * Return a handle on the cached images for one jar, whose current
+	 * entries produced <em>token</em>. Nothing is read until a class is
+	 * requested from the handle.
+	 * @param jarId The jar's {@code jarId}.
+	 * @param token Token from a {@link TokenBuilder} fed every entry of the
+	 * jar in {@code entryId} order.
+	 */
+	public static Jar forJar(int jarId, byte[] token)
+	{
+		return new Jar(jarId, token);
+	}
+
+	/**
+	 * Delete any cached images for a jar. Called by the management commands
+	 * that install, replace, or remove a jar. A backend that already has the
+	 * file mapped keeps its mapping until its schema loaders are rebuilt, when
+	 * the changed token sends it back to the database.
+	 * @param jarId The jar's {@code jarId}.
+	 */
+	public static void invalidate(int jarId) throws SQLException
+	{
+		if(!s_enabled)
+			return;
+		File dir = directory();
+		boolean wasTrusted = Backend.suspendTrusted();
+		try
+		{
+			Files.deleteIfExists(new File(dir, fileName(jarId)).toPath());
+		}
+		catch(IOException e)
+		{
+			s_logger.log(Level.WARNING,
+				"Could not remove cached class images for jar " + jarId, e);
+		}
+		finally
+		{
+			Backend.resumeTrusted(wasTrusted);
+		}
+	}
+
+	/**
+	 * Accumulates the token identifying one version of a jar's entries.
+	 */
+	public static final class TokenBuilder
+	{
+		private final MessageDigest m_digest;
+
+		private final ByteBuffer m_idBytes = ByteBuffer.allocate(4);
+
+		public TokenBuilder()
+		{
+			try
+			{
+				m_digest = MessageDigest.getInstance("SHA-1");
+			}
+			catch(NoSuchAlgorithmException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Add one entry; entries must be added in {@code entryId} order.
+		 */
+		public void add(int entryId, String entryName)
+		{
+			m_idBytes.clear();
+			m_idBytes.putInt(entryId);
+			m_digest.update(m_idBytes.array());
+			m_digest.update(entryName.getBytes(UTF_8));
+		}
+
+		public byte[] finish()
+		{
+			return m_digest.digest();
+		}
+	}
+
+	/**
+	 * The cached class images of one jar, opened (and if necessary built) on
+	 * first use. A {@link org.postgresql.pljava.sqlj.Loader Loader} may ask
+	 * for images from more than one thread.
+	 */
+	public static final class Jar
+	{
+		private final int m_jarId;
+
+		private final byte[] m_token;
+
+		private boolean m_opened;
+
+		private ByteBuffer m_file;
+
+		private int m_count;
+
+		Jar(int jarId, byte[] token)
+		{
+			m_jarId = jarId;
+			m_token = token;
+		}
+
+		/**
+		 * Return a read-only buffer holding the image of the given entry, or
+		 * null if the entry is not in the cache (it is not a class, or the
+		 * cache could not be used).
+		 * @throws SQLException if the database scan to build the cache fails.
+		 */
+		public synchronized ByteBuffer getImage(int entryId)
+		throws SQLException
+		{
+			if(!m_opened)
+			{
+				m_opened = true;
+				m_file = open();
+				if(null == m_file)
+				{
+					build();
+					m_file = open();
+				}
+			}
+			if(null == m_file)
+				return null;
+
+			int lo = 0;
+			int hi = m_count - 1;
+			while(lo <= hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				int at = HEADER_LENGTH + mid * INDEX_ENTRY_LENGTH;
+				int id = m_file.getInt(at);
+				if(id < entryId)
+					lo = mid + 1;
+				else if(id > entryId)
+					hi = mid - 1;
+				else
+				{
+					ByteBuffer b = m_file.duplicate();
+					int offset = m_file.getInt(at + 4);
+					b.limit(offset + m_file.getInt(at + 8)).position(offset);
+					return b.slice();
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Map the jar's cache file and check it against the expected token,
+		 * returning null if it is missing, stale, or unusable.
+		 */
+		private ByteBuffer open() throws SQLException
+		{
+			File f = new File(directory(), fileName(m_jarId));
+			boolean wasTrusted = Backend.suspendTrusted();
+			try(FileChannel fc = FileChannel.open(f.toPath(), READ))
+			{
+				long size = fc.size();
+				if(size < HEADER_LENGTH || size > Integer.MAX_VALUE)
+					return null;
+				MappedByteBuffer mb =
+					fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				if(MAGIC != mb.getInt(0) || VERSION != mb.getInt(4))
+					return null;
+				byte[] token = new byte[TOKEN_LENGTH];
+				mb.position(8);
+				mb.get(token);
+				if(!Arrays.equals(token, m_token))
+					return null;
+				int count = mb.getInt(8 + TOKEN_LENGTH);
+				long dataStart =
+					HEADER_LENGTH + (long)count * INDEX_ENTRY_LENGTH;
+				if(count < 0 || dataStart > size)
+					return null;
+				for(int i = 0; i < count; ++i)
+				{
+					int at = HEADER_LENGTH + i * INDEX_ENTRY_LENGTH;
+					long end = (long)mb.getInt(at + 4) + mb.getInt(at + 8);
+					if(mb.getInt(at + 4) < dataStart || end > size)
+						return null;
+				}
+				m_count = count;
+				return mb;
+			}
+			catch(NoSuchFileException e)
+			{
+				return null;
+			}
+			catch(IOException e)
+			{
+				s_logger.log(Level.WARNING,
+					"Could not read cached class images for jar " + m_jarId, e);
+				return null;
+			}
+			finally
+			{
+				Backend.resumeTrusted(wasTrusted);
+			}
+		}
+
+		/**
+		 * Write the jar's cache file from one scan of its entries.
+		 */
+		private void build() throws SQLException
+		{
+			TokenBuilder tb = new TokenBuilder();
+			ArrayList<Integer> ids = new ArrayList<>();
+			ArrayList<byte[]> images = new ArrayList<>();
+
+			try(PreparedStatement stmt = SQLUtils.getDefaultConnection()
+				.prepareStatement(
+					"SELECT entryId, entryName," +
+					" CASE WHEN entryName LIKE '%.class' THEN entryImage END" +
+					" FROM sqlj.jar_entry" +
+					" WHERE jarId OPERATOR(pg_catalog.=) ?" +
+					" ORDER BY entryId"))
+			{
+				stmt.unwrap(SPIReadOnlyControl.class).clearReadOnly();
+				stmt.setInt(1, m_jarId);
+				try(ResultSet rs = stmt.executeQuery())
+				{
+					while(rs.next())
+					{
+						int entryId = rs.getInt(1);
+						tb.add(entryId, rs.getString(2));
+						byte[] img = rs.getBytes(3);
+						if(null == img)
+							continue;
+						ids.add(entryId);
+						images.add(img);
+					}
+				}
+			}
+
+			int count = ids.size();
+			ByteBuffer header =
+				ByteBuffer.allocate(HEADER_LENGTH + count * INDEX_ENTRY_LENGTH);
+			header.putInt(MAGIC).putInt(VERSION).put(tb.finish());
+			header.putInt(count);
+			int offset = header.capacity();
+			for(int i = 0; i < count; ++i)
+			{
+				int length = images.get(i).length;
+				header.putInt(ids.get(i)).putInt(offset).putInt(length);
+				offset += length;
+			}
+			header.flip();
+
+			File dir = directory();
+			boolean wasTrusted = Backend.suspendTrusted();
+			Path tmp = null;
+			try
+			{
+				Files.createDirectories(dir.toPath());
+				tmp = Files.createTempFile(
+					dir.toPath(), fileName(m_jarId), ".tmp");
+				try(FileChannel fc = FileChannel.open(tmp, WRITE))
+				{
+					while(header.hasRemaining())
+						fc.write(header);
+					for(byte[] img : images)
+					{
+						ByteBuffer b = ByteBuffer.wrap(img);
+						while(b.hasRemaining())
+							fc.write(b);
+					}
+				}
+				Files.move(tmp, new File(dir, fileName(m_jarId)).toPath(),
+					ATOMIC_MOVE, REPLACE_EXISTING);
+				tmp = null;
+			}
+			catch(IOException e)
+			{
+				s_logger.log(Level.WARNING,
+					"Could not write cached class images for jar " + m_jarId,
+					e);
+			}
+			finally
+			{
+				if(null != tmp)
+					try { Files.deleteIfExists(tmp); } catch(IOException e) {}
+				Backend.resumeTrusted(wasTrusted);
+			}
+		}
+	}
+
+	private static String fileName(int jarId)
+	{
+		return "jar" + jarId;
+	}
+
+	/**
+	 * The cache directory for the current database.
+	 */
+	private static synchronized File directory() throws SQLException
+	{
+		if(null == s_directory)
+			s_directory = new File(new File(pljavaDataDirectory(),
+				"classcache"), Long.toString(currentDatabaseOid()));
+		return s_directory;
+	}
+
+	/**
+	 * The {@code pljava} directory under the cluster's data directory, where
+	 * PL/Java keeps its cached files.
+	 */
+	static File pljavaDataDirectory()
+	{
+		return new File(System.getProperty("org.postgresql.datadir"), "pljava");
+	}
+
+	/**
+	 * The oid of the current database, as an unsigned value.
+	 */
+	static long currentDatabaseOid() throws SQLException
+	{
+		try(PreparedStatement stmt = SQLUtils.getDefaultConnection()
+			.prepareStatement(
+				"SELECT oid FROM pg_catalog.pg_database" +
+				" WHERE datname OPERATOR(pg_catalog.=)" +
+				" pg_catalog.current_database()"))
+		{
+			stmt.unwrap(SPIReadOnlyControl.class).clearReadOnly();
+			try(ResultSet rs = stmt.executeQuery())
+			{
+				if(!rs.next())
+					throw new SQLException(
+						"Unable to determine current database oid");
+				return rs.getLong(1) & 0xffffffffL;
+			}
+		}
+	}
+}
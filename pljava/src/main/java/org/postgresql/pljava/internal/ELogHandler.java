@@ -10,6 +10,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.ErrorManager;
 import java.util.logging.Filter;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -19,6 +23,19 @@ import java.util.logging.LogRecord;
 
 /**
  * Provides access to the loggin mechanism of the PostgreSQL server.
+ *<p>
+ * If {@code pljava.log_queue_size} is positive when the JVM starts, records
+ * are not sent to the server as they are published. Instead, they are put in
+ * a bounded queue, from any thread and without locking, and sent in batches
+ * at points where the backend thread is known to be at hand: when a Java
+ * function returns, before SPI is used, and before a transaction commits. A
+ * {@code SEVERE} record, which the server reports as an {@code ERROR}, is
+ * never queued: it is sent at once, after any records already queued, so
+ * the error is raised where it was logged. When the queue is full, the backend thread sends what is queued and then its own
+ * record. Another thread sends a {@code WARNING} or {@code SEVERE} record
+ * directly, waiting for the backend as before, and drops a less severe one.
+ * The number dropped is reported with the next batch, and is available from
+ * {@link #getDroppedCount getDroppedCount}.
  *
  * @author Thomas Hallgren
  */
@@ -74,53 +91,223 @@ public class ELogHandler extends Handler
 	 */
 	public static final int LOG_PANIC   = 22;
 
+	/**
+	 * Capacity of the queue for handlers made from now on, from
+	 * {@code pljava.log_queue_size}; zero if records are not queued.
+	 */
+	private static int s_queueSize;
+
+	/**
+	 * The handler whose queue {@link #drain drain} empties.
+	 */
+	private static volatile ELogHandler s_queued;
+
+	private static final AtomicLong s_queuedCount = new AtomicLong();
+
+	private static final AtomicLong s_droppedCount = new AtomicLong();
+
+	/**
+	 * The records waiting to be sent, or null if each is sent as published.
+	 */
+	private final RecordRing m_ring;
+
+	/**
+	 * The value of {@link #s_droppedCount} at the last report of drops;
+	 * only used under {@code Backend.THREADLOCK}.
+	 */
+	private long m_droppedReported;
+
 	/* (non-Javadoc)
 	 * @see java.util.logging.Handler#publish(java.util.logging.LogRecord)
 	 */
 	public void publish(LogRecord record)
+	{
+		if(m_ring == null)
+		{
+			send(record);
+			return;
+		}
+
+		if(LOG_ERROR == pgLevel(record))
+		{
+			drainRing();
+			sendNow(record);
+			return;
+		}
+
+		/*
+		 * The formatter names the source class, which is found by walking
+		 * the stack of the thread that logged; it has to happen here.
+		 */
+		record.getSourceClassName();
+		if(m_ring.offer(record))
+		{
+			s_queuedCount.incrementAndGet();
+			return;
+		}
+
+		if(Session.isBackendThread())
+			drainRing();
+		else if(record.getLevel() == null
+			|| record.getLevel().intValue() < Level.WARNING.intValue())
+		{
+			s_droppedCount.incrementAndGet();
+			return;
+		}
+		send(record);
+	}
+
+	/**
+	 * Send any queued records to the server. Called from native code, and
+	 * before SPI is used. Does nothing if records are not being queued.
+	 */
+	public static void drain()
+	{
+		ELogHandler handler = s_queued;
+		if(handler == null)
+			return;
+		/*
+		 * Called from native code that cannot take an exception, such as
+		 * a transaction callback or the return from a function.
+		 */
+		try
+		{
+			handler.drainRing();
+		}
+		catch(Throwable t)
+		{
+			handler.reportError(null,
+				t instanceof Exception ? (Exception)t : new Exception(t),
+				ErrorManager.FLUSH_FAILURE);
+		}
+	}
+
+	/**
+	 * Returns the number of records queued since the JVM started.
+	 */
+	public static long getQueuedCount()
+	{
+		return s_queuedCount.get();
+	}
+
+	/**
+	 * Returns the number of records dropped because the queue was full.
+	 */
+	public static long getDroppedCount()
+	{
+		return s_droppedCount.get();
+	}
+
+	private void drainRing()
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			LogRecord record;
+			while(null != (record = m_ring.poll()))
+				send(record);
+
+			long dropped = s_droppedCount.get();
+			if(dropped != m_droppedReported)
+			{
+				long since = dropped - m_droppedReported;
+				m_droppedReported = dropped;
+				try
+				{
+					Backend.log(LOG_WARNING, since + " Java log record" +
+						(since > 1 ? "s" : "") + " dropped because " +
+						"pljava.log_queue_size was exceeded");
+				}
+				catch(Exception e)
+				{
+					reportError(null, e, ErrorManager.WRITE_FAILURE);
+				}
+			}
+		}
+	}
+
+	private void send(LogRecord record)
+	{
+		if(m_ring != null)
+		{
+			/*
+			 * A queued record is sent when draining, where an exception would
+			 * escape to native code that cannot take one. Backend.log can
+			 * throw a ServerException, which is checked, so catch broadly.
+			 */
+			try
+			{
+				sendNow(record);
+			}
+			catch(Exception e)
+			{
+				reportError(null, e, ErrorManager.FORMAT_FAILURE);
+			}
+			return;
+		}
+		sendNow(record);
+	}
+
+	private void sendNow(LogRecord record)
+	{
+		Backend.log(pgLevel(record), this.getFormatter().format(record));
+	}
+
+	private static int pgLevel(LogRecord record)
 	{
 		Level level = record.getLevel();
-		int pgLevel;
 		if(level == null)
-			pgLevel = LOG_LOG;
+			return LOG_LOG;
 		else if(level.equals(Level.SEVERE))
-			pgLevel = LOG_ERROR;
+			return LOG_ERROR;
 		else if(level.equals(Level.WARNING))
-			pgLevel = LOG_WARNING;
+			return LOG_WARNING;
 		else if(level.equals(Level.INFO))
-			pgLevel = LOG_INFO;
+			return LOG_INFO;
 		else if(level.equals(Level.FINE))
-			pgLevel = LOG_DEBUG1;
+			return LOG_DEBUG1;
 		else if(level.equals(Level.FINER))
-			pgLevel = LOG_DEBUG2;
+			return LOG_DEBUG2;
 		else if(level.equals(Level.FINEST))
-			pgLevel = LOG_DEBUG3;
+			return LOG_DEBUG3;
 		else
-			pgLevel = LOG_LOG;
-		Backend.log(pgLevel, this.getFormatter().format(record));
+			return LOG_LOG;
 	}
 
 	public ELogHandler()
 	{
 		this.configure();
+		if(s_queueSize > 0)
+		{
+			m_ring = new RecordRing(s_queueSize);
+			s_queued = this;
+		}
+		else
+			m_ring = null;
 	}
 
 	/**
-	 * This is a no-op.
+	 * Sends any queued records, waiting for the backend if called on another
+	 * thread. Otherwise a no-op.
 	 */
 	public void flush()
 	{
+		if(m_ring != null)
+			drainRing();
 	}
 
 	/**
-	 * This is a no-op.
+	 * Sends any queued records, as {@link #flush flush} does.
 	 */
 	public void close() throws SecurityException
 	{
+		flush();
+		if(s_queued == this)
+			s_queued = null;
 	}
 
 	public static void init()
 	{
+		s_queueSize = getQueueSize();
 		Properties props = new Properties();
 		props.setProperty("handlers", ELogHandler.class.getName());
 		props.setProperty(".level", getPgLevel().getName());
@@ -185,6 +372,98 @@ public class ELogHandler extends Handler
 		return finestLevel;
 	}
 
+	/**
+	 * Obtains {@code pljava.log_queue_size}, rounded up to a power of two.
+	 */
+	private static int getQueueSize()
+	{
+		String setting = Backend.getConfigOption("pljava.log_queue_size");
+		int size;
+		try
+		{
+			size = null == setting ? 0 : Integer.parseInt(setting.trim());
+		}
+		catch(NumberFormatException e)
+		{
+			size = 0;
+		}
+		if(size <= 0)
+			return 0;
+		int capacity = Integer.highestOneBit(size);
+		return capacity < size ? capacity << 1 : capacity;
+	}
+
+	/**
+	 * A bounded queue that any thread can offer to without locking, and that
+	 * one thread at a time (holding {@code Backend.THREADLOCK}) polls.
+	 *<p>
+	 * Each slot has a sequence number. A slot is free for the offer numbered
+	 * <em>n</em> when its sequence is <em>n</em>, and holds that offer's
+	 * record, ready to poll, when its sequence is <em>n</em>+1; polling sets
+	 * it to <em>n</em> plus the capacity, freeing it for the offer one lap
+	 * later.
+	 */
+	private static final class RecordRing
+	{
+		private final int m_mask;
+
+		private final AtomicReferenceArray<LogRecord> m_records;
+
+		private final AtomicLongArray m_sequences;
+
+		private final AtomicLong m_tail = new AtomicLong();
+
+		private long m_head;
+
+		/**
+		 * @param capacity A power of two.
+		 */
+		RecordRing(int capacity)
+		{
+			m_mask = capacity - 1;
+			m_records = new AtomicReferenceArray<LogRecord>(capacity);
+			m_sequences = new AtomicLongArray(capacity);
+			for(int i = 0; i < capacity; ++i)
+				m_sequences.set(i, i);
+		}
+
+		/**
+		 * Adds a record, returning false if the queue is full.
+		 */
+		boolean offer(LogRecord record)
+		{
+			for(;;)
+			{
+				long tail = m_tail.get();
+				int slot = (int)tail & m_mask;
+				long gap = m_sequences.get(slot) - tail;
+				if(gap < 0)
+					return false;
+				if(gap == 0 && m_tail.compareAndSet(tail, tail + 1))
+				{
+					m_records.lazySet(slot, record);
+					m_sequences.set(slot, tail + 1);
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Removes the oldest record, or returns null if there is none ready.
+		 */
+		LogRecord poll()
+		{
+			int slot = (int)m_head & m_mask;
+			if(m_sequences.get(slot) != m_head + 1)
+				return null;
+			LogRecord record = m_records.get(slot);
+			m_records.lazySet(slot, null);
+			m_sequences.set(slot, m_head + m_mask + 1);
+			++m_head;
+			return record;
+		}
+	}
+
 	// Private method to configure an ELogHandler
 	//
 	private void configure()
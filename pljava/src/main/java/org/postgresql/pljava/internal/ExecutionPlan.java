@@ -13,9 +13,10 @@
 package org.postgresql.pljava.internal;
 
 import java.sql.SQLException;
-import java.util.Collections;
-import java.util.Map;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The <code>ExecutionPlan</code> correspons to the execution plan obtained
@@ -37,35 +38,70 @@ public class ExecutionPlan
 	private long m_pointer;
 
 	/**
-	 * MRU cache for prepared plans.
+	 * Cache for prepared plans, a {@link SegmentedLRUCache} keyed on the
+	 * statement text and parameter types.
+	 *<p>
+	 * Plans are checked out (removed) by {@link #prepare prepare} and checked
+	 * back in by {@link #close close}, so a plan is never shared by two
+	 * statements at once and cannot be evicted while in use. A plan displaced
+	 * by eviction or by a duplicate check-in is invalidated only after the
+	 * segment monitor has been released, so a segment monitor is never held
+	 * while waiting for {@link Backend#THREADLOCK}.
 	 */
-	static final class PlanCache extends LinkedHashMap
+	static final class PlanCache extends SegmentedLRUCache<Object,ExecutionPlan>
 	{
-		private final int m_cacheSize;
+		PlanCache(int cacheSize)
+		{
+			super(cacheSize);
+		}
 
-		public PlanCache(int cacheSize)
+		/**
+		 * Remove and return the cached plan for <em>key</em>, or null.
+		 */
+		ExecutionPlan checkOut(Object key)
 		{
-			super(INITIAL_CACHE_CAPACITY, CACHE_LOAD_FACTOR, true);
-			m_cacheSize = cacheSize;
+			ExecutionPlan plan = this.remove(key);
+			if(null != plan)
+				++ plan.m_hits;
+			return plan;
 		}
 
-		protected boolean removeEldestEntry(Map.Entry eldest)
+		/**
+		 * Return a plan to the cache, invalidating any plan it displaces.
+		 */
+		void checkIn(Object key, ExecutionPlan plan)
 		{
-			if(this.size() <= m_cacheSize)
-				return false;
+			ExecutionPlan old = this.put(key, plan);
+			if(null != old && old != plan)
+				old.invalidate();
+		}
 
-			ExecutionPlan evicted = (ExecutionPlan)eldest.getValue();
-			synchronized(Backend.THREADLOCK)
+		@Override
+		protected void evicted(ExecutionPlan evicted)
+		{
+			if(s_logger.isLoggable(Level.FINER))
+				s_logger.finer("Evicting plan (" + evicted.m_hits +
+					" hits) for: " + evicted.m_statement);
+			evicted.invalidate();
+		}
+
+		/**
+		 * Collect statistics for every plan currently in the cache.
+		 */
+		List<PlanStatistics> snapshot()
+		{
+			final ArrayList<PlanStatistics> stats = new ArrayList<>();
+			this.forEach(new Visitor<ExecutionPlan>()
 			{
-				if(evicted.m_pointer != 0)
+				@Override
+				public void visit(ExecutionPlan plan)
 				{
-					_invalidate(evicted.m_pointer);
-					evicted.m_pointer = 0;
+					stats.add(new PlanStatistics(plan));
 				}
-			}
-			return true;
+			});
+			return stats;
 		}
-	};
+	}
 
 	static final class PlanKey
 	{
@@ -110,22 +146,42 @@ public class ExecutionPlan
 		}
 	}
 
-	private static final Map s_planCache;
+	private static final Logger s_logger =
+		Logger.getLogger(ExecutionPlan.class.getName());
+
+	private static final PlanCache s_planCache;
 
 	private final Object m_key;
 
+	private final String m_statement;
+
+	private final Oid[] m_argTypes;
+
+	/*
+	 * Usage statistics, updated only by whoever has the plan checked out, and
+	 * read by PlanCache.snapshot() only while the plan is checked in.
+	 */
+	private final long m_prepareNanos;
+
+	private long m_hits;
+
+	private long m_lastUsed;
+
 	static
 	{
 		int cacheSize = Backend.getStatementCacheSize();
-		s_planCache = Collections.synchronizedMap(new PlanCache(cacheSize < 11
-			? 11
-			: cacheSize));
+		s_planCache = new PlanCache(cacheSize < 11 ? 11 : cacheSize);
 	}
 
-	private ExecutionPlan(Object key, long pointer)
+	private ExecutionPlan(Object key, String statement, Oid[] argTypes,
+		long pointer, long prepareNanos)
 	{
 		m_key = key;
+		m_statement = statement;
+		m_argTypes = argTypes;
 		m_pointer = pointer;
+		m_prepareNanos = prepareNanos;
+		m_lastUsed = System.currentTimeMillis();
 	}
 
 	/**
@@ -133,17 +189,188 @@ public class ExecutionPlan
 	 */
 	public void close()
 	{
-		ExecutionPlan old = (ExecutionPlan)s_planCache.put(m_key, this);
-		if(old != null && old.m_pointer != 0)
+		m_lastUsed = System.currentTimeMillis();
+		s_planCache.checkIn(m_key, this);
+	}
+
+	/**
+	 * Release the native plan, if that has not already been done.
+	 */
+	private void invalidate()
+	{
+		synchronized(Backend.THREADLOCK)
 		{
-			synchronized(Backend.THREADLOCK)
+			if(m_pointer != 0)
 			{
-				_invalidate(old.m_pointer);
-				old.m_pointer = 0;
+				_invalidate(m_pointer);
+				m_pointer = 0;
 			}
 		}
 	}
 
+	/**
+	 * Return a snapshot of the plan cache counters.
+	 *<p>
+	 * The counters are cumulative for the life of the backend.
+	 * @return the statistics, in a freshly-allocated object.
+	 */
+	public static CacheStatistics getCacheStatistics()
+	{
+		PlanCache pc = s_planCache;
+		return new CacheStatistics(
+			pc.getHits(), pc.getMisses(), pc.getEvictions(),
+			pc.size(), pc.capacity(), pc.segmentCount());
+	}
+
+	/**
+	 * Return statistics for each plan currently held in the plan cache.
+	 *<p>
+	 * Plans that are checked out (prepared by a statement that has not yet
+	 * been closed) are not included.
+	 * @return a list of statistics, in no particular order.
+	 */
+	public static List<PlanStatistics> getCachedPlanStatistics()
+	{
+		return s_planCache.snapshot();
+	}
+
+	/**
+	 * Immutable snapshot of the usage of one cached plan, as returned by
+	 * {@link #getCachedPlanStatistics getCachedPlanStatistics}.
+	 */
+	public static final class PlanStatistics
+	{
+		private final String m_statement;
+		private final Oid[] m_argTypes;
+		private final long m_hits;
+		private final long m_prepareNanos;
+		private final long m_lastUsed;
+
+		PlanStatistics(ExecutionPlan plan)
+		{
+			m_statement = plan.m_statement;
+			m_argTypes = plan.m_argTypes;
+			m_hits = plan.m_hits;
+			m_prepareNanos = plan.m_prepareNanos;
+			m_lastUsed = plan.m_lastUsed;
+		}
+
+		/**
+		 * The statement text as passed to {@code SPI_prepare}.
+		 */
+		public String getStatement()
+		{
+			return m_statement;
+		}
+
+		/**
+		 * The argument types the plan was prepared with, or null if none
+		 * were given.
+		 */
+		public Oid[] getArgTypes()
+		{
+			return null == m_argTypes ? null : m_argTypes.clone();
+		}
+
+		/**
+		 * Number of times the plan was reused from the cache.
+		 */
+		public long getHits()
+		{
+			return m_hits;
+		}
+
+		/**
+		 * Time taken by {@code SPI_prepare} for the plan, in nanoseconds.
+		 */
+		public long getPrepareNanos()
+		{
+			return m_prepareNanos;
+		}
+
+		/**
+		 * When the plan was last returned to the cache, in milliseconds since
+		 * the epoch.
+		 */
+		public long getLastUsed()
+		{
+			return m_lastUsed;
+		}
+	}
+
+	/**
+	 * Immutable snapshot of plan cache counters, as returned by
+	 * {@link #getCacheStatistics getCacheStatistics}.
+	 */
+	public static final class CacheStatistics
+	{
+		private final long m_hits;
+		private final long m_misses;
+		private final long m_evictions;
+		private final int m_size;
+		private final int m_capacity;
+		private final int m_segments;
+
+		CacheStatistics(long hits, long misses, long evictions,
+			int size, int capacity, int segments)
+		{
+			m_hits = hits;
+			m_misses = misses;
+			m_evictions = evictions;
+			m_size = size;
+			m_capacity = capacity;
+			m_segments = segments;
+		}
+
+		/**
+		 * Number of {@code prepare} calls satisfied from the cache.
+		 */
+		public long getHits()
+		{
+			return m_hits;
+		}
+
+		/**
+		 * Number of {@code prepare} calls that needed {@code SPI_prepare}.
+		 */
+		public long getMisses()
+		{
+			return m_misses;
+		}
+
+		/**
+		 * Number of plans discarded to keep the cache within capacity.
+		 */
+		public long getEvictions()
+		{
+			return m_evictions;
+		}
+
+		/**
+		 * Number of plans in the cache (not counting any checked out).
+		 */
+		public int getSize()
+		{
+			return m_size;
+		}
+
+		/**
+		 * Maximum number of plans the cache will hold.
+		 */
+		public int getCapacity()
+		{
+			return m_capacity;
+		}
+
+		/**
+		 * Number of independently locked segments in the cache.
+		 */
+		public int getSegments()
+		{
+			return m_segments;
+		}
+	}
+
 	/**
 	 * Set up a cursor that will execute the plan using the internal
 	 * <code>SPI_cursor_open</code> function
@@ -164,6 +391,7 @@ public class ExecutionPlan
 	{
 		synchronized(Backend.THREADLOCK)
 		{
+			ELogHandler.drain();
 			return _cursorOpen(m_pointer, System.identityHashCode(Thread
 				.currentThread()), cursorName, parameters, read_only);
 		}
@@ -205,11 +433,38 @@ public class ExecutionPlan
 	{
 		synchronized(Backend.THREADLOCK)
 		{
+			ELogHandler.drain();
 			return _execute(m_pointer, System.identityHashCode(Thread
 				.currentThread()), parameters, read_only, rowCount);
 		}
 	}
 
+	/**
+	 * Execute the plan once for each of several sets of parameters, with one
+	 * call into native code for all of them.
+	 * 
+	 * @param parameterSets Values for the parameters, one array for each
+	 *            execution.
+	 * @param read_only As for {@link #execute execute}.
+	 * @param rowCount As for {@link #execute execute}, applied to each
+	 *            execution.
+	 * @return The number of rows processed by each execution.
+	 * @throws SQLException If the underlying native structure has gone stale,
+	 *            or any execution fails; the executions before it are not
+	 *            undone.
+	 */
+	public long[] executeBatch(
+		Object[][] parameterSets, short read_only, int rowCount)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			ELogHandler.drain();
+			return _executeBatch(m_pointer, System.identityHashCode(Thread
+				.currentThread()), parameterSets, read_only, rowCount);
+		}
+	}
+
 	/**
 	 * Create an execution plan for a statement to be executed later using the
 	 * internal <code>SPI_prepare</code> function.
@@ -227,13 +482,17 @@ public class ExecutionPlan
 			? (Object)statement
 			: (Object)new PlanKey(statement, argTypes);
 
-		ExecutionPlan plan = (ExecutionPlan)s_planCache.remove(key);
+		ExecutionPlan plan = s_planCache.checkOut(key);
 		if(plan == null)
 		{
 			synchronized(Backend.THREADLOCK)
 			{
-				plan = new ExecutionPlan(key, _prepare(
-					System.identityHashCode(Thread.currentThread()), statement, argTypes));
+				long start = System.nanoTime();
+				long pointer = _prepare(
+					System.identityHashCode(Thread.currentThread()),
+					statement, argTypes);
+				plan = new ExecutionPlan(key, statement, argTypes, pointer,
+					System.nanoTime() - start);
 			}
 		}
 		return plan;
@@ -249,6 +508,10 @@ public class ExecutionPlan
 	private static native int _execute(long pointer, long threadId,
 		Object[] parameters, short read_only, int rowCount) throws SQLException;
 
+	private static native long[] _executeBatch(long pointer, long threadId,
+		Object[][] parameterSets, short read_only, int rowCount)
+		throws SQLException;
+
 	private static native long _prepare(long threadId, String statement, Oid[] argTypes)
 	throws SQLException;
 
@@ -143,7 +143,14 @@ public class MarkableSequenceInputStream extends InputStream
 			m_readlimit_curr -= bytes;
 			return;
 		}
+		/*
+		 * The callers have just obtained the current stream with next(), and
+		 * not yet restored the "current" invariant that mark() relies on, so
+		 * restore it around the call and leave things as they were found.
+		 */
+		m_streams.previous();
 		mark(0); /* undo markage of underlying streams */
+		m_streams.next();
 	}
 
 	@Override
@@ -87,10 +87,25 @@ public class Relation extends JavaWrapper
 	 */
 	public Tuple modifyTuple(Tuple original, int[] fieldNumbers, Object[] values)
 	throws SQLException
+	{
+		return this.modifyTuple(
+			original, fieldNumbers, values, fieldNumbers.length);
+	}
+
+	/**
+	 * As for {@link #modifyTuple(Tuple,int[],Object[])}, but using only the
+	 * first <em>count</em> elements of <em>fieldNumbers</em> and
+	 * <em>values</em>, which may be longer.
+	 *
+	 * @param count The number of columns to modify.
+	 */
+	public Tuple modifyTuple(
+		Tuple original, int[] fieldNumbers, Object[] values, int count)
+	throws SQLException
 	{
 		synchronized(Backend.THREADLOCK)
 		{
-			return _modifyTuple(this.getNativePointer(), original.getNativePointer(), fieldNumbers, values);
+			return _modifyTuple(this.getNativePointer(), original.getNativePointer(), fieldNumbers, values, count);
 		}
 	}
 
@@ -105,6 +120,6 @@ public class Relation extends JavaWrapper
 	private static native TupleDesc _getTupleDesc(long pointer)
 	throws SQLException;
 
-	private static native Tuple _modifyTuple(long pointer, long original, int[] fieldNumbers, Object[] values)
+	private static native Tuple _modifyTuple(long pointer, long original, int[] fieldNumbers, Object[] values, int count)
 	throws SQLException;
 }
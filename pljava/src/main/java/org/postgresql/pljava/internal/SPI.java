@@ -106,6 +106,37 @@ public class SPI
 		}
 	}
 
+	/**
+	 * Returns the total size in bytes of the tuples in
+	 * <code>SPI_tuptable</code>, or zero if there is none.
+	 */
+	public static long getTupTableSize()
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getTupTableSize();
+		}
+	}
+
+	/**
+	 * Stores the columns of <code>SPI_tuptable</code> into the given arrays,
+	 * which must have one element per column, and returns the number of rows.
+	 * Each element of <code>data</code> becomes an <code>int[]</code>,
+	 * <code>long[]</code>, <code>double[]</code>, or <code>byte[]</code>; for
+	 * a <code>byte[]</code>, the same element of <code>offsets</code> becomes
+	 * an <code>int[]</code> of where each row's bytes begin, with one more
+	 * entry for the end. The element of <code>nulls</code> becomes a bitmap of
+	 * the null rows, or stays null if the column has none.
+	 */
+	public static int getTupTableColumns(
+		Object[] data, Object[] offsets, Object[] nulls)
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getTupTableColumns(data, offsets, nulls);
+		}
+	}
+
 	/**
 	 * Returns a textual representation of a result code.
 	 */
@@ -193,4 +224,7 @@ public class SPI
 	private native static int _getResult();
 	private native static void _freeTupTable();
 	private native static TupleTable _getTupTable(TupleDesc known);
+	private native static long _getTupTableSize();
+	private native static int _getTupTableColumns(
+		Object[] data, Object[] offsets, Object[] nulls);
 }
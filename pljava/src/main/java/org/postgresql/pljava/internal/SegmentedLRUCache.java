@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-striped, approximately-LRU cache, with counters of its hits, misses,
+ * and evictions.
+ *<p>
+ * The cache is divided into a power-of-two number of segments, each an
+ * access-ordered {@code LinkedHashMap} guarded by its own monitor, and a
+ * key is always found in the segment selected by its hash. An operation
+ * therefore contends only with other operations on the same segment, and
+ * eviction is least-recently-used within a segment rather than across the
+ * whole cache.
+ *<p>
+ * A value pushed out by eviction is passed to {@link #evicted evicted} only
+ * after the segment monitor has been released, so a subclass may do slow or
+ * blocking work there.
+ */
+public class SegmentedLRUCache<K,V>
+{
+	/**
+	 * Segments are not made smaller than this, so the approximation to
+	 * LRU stays reasonable for small caches.
+	 */
+	static final int MIN_SEGMENT_CAPACITY = 8;
+
+	static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Called with each value found in the cache by {@link #forEach forEach}.
+	 */
+	public interface Visitor<V>
+	{
+		void visit(V value);
+	}
+
+	private static final class Segment<K,V> extends LinkedHashMap<K,V>
+	{
+		private static final long serialVersionUID = 3405726114519835231L;
+
+		private final int m_segmentCapacity;
+
+		private V m_evicted;
+
+		Segment(int segmentCapacity)
+		{
+			super(16, 0.75f, true);
+			m_segmentCapacity = segmentCapacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K,V> eldest)
+		{
+			if(this.size() <= m_segmentCapacity)
+				return false;
+			m_evicted = eldest.getValue();
+			return true;
+		}
+
+		/**
+		 * Return the value most recently pushed out by
+		 * {@code removeEldestEntry}, if any, and forget it. Only to be
+		 * called while holding this segment's monitor.
+		 */
+		V takeEvicted()
+		{
+			V evicted = m_evicted;
+			m_evicted = null;
+			return evicted;
+		}
+	}
+
+	private final Segment<K,V>[] m_segments;
+
+	private final int m_segmentMask;
+
+	private final int m_capacity;
+
+	private final AtomicLong m_hits = new AtomicLong();
+
+	private final AtomicLong m_misses = new AtomicLong();
+
+	private final AtomicLong m_evictions = new AtomicLong();
+
+	/**
+	 * Make a cache holding about <em>cacheSize</em> entries, rounded up to
+	 * a multiple of the number of segments chosen.
+	 */
+	@SuppressWarnings("unchecked")
+	public SegmentedLRUCache(int cacheSize)
+	{
+		int nSegments = 1;
+		while(nSegments < MAX_SEGMENTS
+			&& (nSegments << 1) * MIN_SEGMENT_CAPACITY <= cacheSize)
+			nSegments <<= 1;
+
+		int segmentCapacity = (cacheSize + nSegments - 1) / nSegments;
+		m_segments = (Segment<K,V>[])new Segment<?,?>[nSegments];
+		for(int idx = 0; idx < nSegments; ++idx)
+			m_segments[idx] = new Segment<K,V>(segmentCapacity);
+		m_segmentMask = nSegments - 1;
+		m_capacity = segmentCapacity * nSegments;
+	}
+
+	private Segment<K,V> segmentFor(Object key)
+	{
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return m_segments[h & m_segmentMask];
+	}
+
+	/**
+	 * Return the value cached for <em>key</em>, or null, counting a hit or
+	 * a miss.
+	 */
+	public V get(K key)
+	{
+		Segment<K,V> seg = segmentFor(key);
+		V value;
+		synchronized(seg)
+		{
+			value = seg.get(key);
+		}
+		count(value);
+		return value;
+	}
+
+	/**
+	 * Remove and return the value cached for <em>key</em>, or null, counting
+	 * a hit or a miss.
+	 */
+	public V remove(K key)
+	{
+		Segment<K,V> seg = segmentFor(key);
+		V value;
+		synchronized(seg)
+		{
+			value = seg.remove(key);
+		}
+		count(value);
+		return value;
+	}
+
+	/**
+	 * Cache <em>value</em> for <em>key</em>, returning the value it replaces,
+	 * if any. If that pushes another entry out of the segment, the value
+	 * pushed out is passed to {@link #evicted evicted} before this method
+	 * returns.
+	 */
+	public V put(K key, V value)
+	{
+		Segment<K,V> seg = segmentFor(key);
+		V old;
+		V evicted;
+		synchronized(seg)
+		{
+			old = seg.put(key, value);
+			evicted = seg.takeEvicted();
+		}
+		if(null != evicted)
+		{
+			m_evictions.incrementAndGet();
+			this.evicted(evicted);
+		}
+		return old;
+	}
+
+	/**
+	 * Called with each value pushed out of the cache to make room, without
+	 * any segment monitor held. This implementation does nothing.
+	 */
+	protected void evicted(V value)
+	{
+	}
+
+	/**
+	 * Pass each value now in the cache to <em>visitor</em>, while holding
+	 * the monitor of the segment it is in.
+	 */
+	public void forEach(Visitor<? super V> visitor)
+	{
+		for(Segment<K,V> seg : m_segments)
+		{
+			synchronized(seg)
+			{
+				for(V value : seg.values())
+					visitor.visit(value);
+			}
+		}
+	}
+
+	private void count(V value)
+	{
+		if(null == value)
+			m_misses.incrementAndGet();
+		else
+			m_hits.incrementAndGet();
+	}
+
+	/**
+	 * Number of lookups that found a value, for the life of the cache.
+	 */
+	public long getHits()
+	{
+		return m_hits.get();
+	}
+
+	/**
+	 * Number of lookups that found no value, for the life of the cache.
+	 */
+	public long getMisses()
+	{
+		return m_misses.get();
+	}
+
+	/**
+	 * Number of values pushed out to make room, for the life of the cache.
+	 */
+	public long getEvictions()
+	{
+		return m_evictions.get();
+	}
+
+	/**
+	 * Total number of values currently cached.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for(Segment<K,V> seg : m_segments)
+		{
+			synchronized(seg)
+			{
+				size += seg.size();
+			}
+		}
+		return size;
+	}
+
+	public int capacity()
+	{
+		return m_capacity;
+	}
+
+	public int segmentCount()
+	{
+		return m_segments.length;
+	}
+}
@@ -14,9 +14,12 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 
+import org.postgresql.pljava.BackendExecutor;
 import org.postgresql.pljava.ObjectPool;
 import org.postgresql.pljava.SavepointListener;
+import org.postgresql.pljava.StatementPool;
 import org.postgresql.pljava.TransactionListener;
+import org.postgresql.pljava.jdbc.SPIStatementPool;
 import org.postgresql.pljava.jdbc.SQLUtils;
 
 
@@ -36,6 +39,20 @@ public class Session implements org.postgresql.pljava.Session
 	 */
 	static Charset s_serverCharset;
 
+	/**
+	 * The thread of the PostgreSQL backend, recorded by {@link #init init}.
+	 */
+	private static Thread s_backendThread;
+
+	/**
+	 * Whether the calling thread is the PostgreSQL backend's own, which
+	 * reaches PostgreSQL without waiting for another thread to return.
+	 */
+	static boolean isBackendThread()
+	{
+		return Thread.currentThread() == s_backendThread;
+	}
+
 	/**
 	 * A static method (not part of the API-exposed Session interface) by which
 	 * pljava implementation classes can get hold of the server charset without
@@ -83,6 +100,18 @@ public class Session implements org.postgresql.pljava.Session
 		return ObjectPoolImpl.getObjectPool(cls);
 	}
 
+	@Override
+	public StatementPool getStatementPool()
+	{
+		return SPIStatementPool.getDefault();
+	}
+
+	@Override
+	public BackendExecutor getExecutor()
+	{
+		return BackendExecutorImpl.getInstance();
+	}
+
 	@Override
 	public String getUserName()
 	{
@@ -210,6 +239,7 @@ public class Session implements org.postgresql.pljava.Session
 	static long init()
 	throws SQLException
 	{
+		s_backendThread = Thread.currentThread();
 		ELogHandler.init();
 		
 		// Should be replace with a Thread.getId() once we abandon
@@ -8,8 +8,11 @@ package org.postgresql.pljava.internal;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
+import org.postgresql.pljava.ColumnBatchReader;
 import org.postgresql.pljava.TriggerException;
+import org.postgresql.pljava.jdbc.SQLUtils;
 import org.postgresql.pljava.jdbc.TriggerResultSet;
 
 /**
@@ -20,11 +23,16 @@ import org.postgresql.pljava.jdbc.TriggerResultSet;
 public class TriggerData extends JavaWrapper implements org.postgresql.pljava.TriggerData
 {
 	private Relation m_relation;
+	private TupleDesc m_tupleDesc;
 	private TriggerResultSet m_old = null;
 	private TriggerResultSet m_new = null;
 	private Tuple m_newTuple;
 	private Tuple m_triggerTuple;
 	private boolean m_suppress = false;
+	private ColumnBatchReader m_oldTable;
+	private ColumnBatchReader m_newTable;
+	private Statement m_oldTableStatement;
+	private Statement m_newTableStatement;
 
 	TriggerData(long pointer)
 	{
@@ -72,7 +80,7 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 				
 		// Triggers fired after will always have a read-only row
 		//
-		m_new = new TriggerResultSet(this.getRelation().getTupleDesc(), tuple, this.isFiredAfter());
+		m_new = new TriggerResultSet(this.getTupleDesc(), tuple, this.isFiredAfter());
 		return m_new;
 	}
 
@@ -95,10 +103,99 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 
 		if (this.isFiredByInsert() || this.isFiredForStatement())
 			return null;
-		m_old = new TriggerResultSet(this.getRelation().getTupleDesc(), this.getTriggerTuple(), true);
+		m_old = new TriggerResultSet(this.getTupleDesc(), this.getTriggerTuple(), true);
 		return m_old;
 	}
 
+	@Override
+	public ColumnBatchReader getNewTable() throws SQLException
+	{
+		if (m_newTable == null && m_newTableStatement == null)
+		{
+			m_newTableStatement =
+				SQLUtils.getDefaultConnection().createStatement();
+			m_newTable = this.openTransitionTable(true, m_newTableStatement);
+		}
+		return m_newTable;
+	}
+
+	@Override
+	public ColumnBatchReader getOldTable() throws SQLException
+	{
+		if (m_oldTable == null && m_oldTableStatement == null)
+		{
+			m_oldTableStatement =
+				SQLUtils.getDefaultConnection().createStatement();
+			m_oldTable = this.openTransitionTable(false, m_oldTableStatement);
+		}
+		return m_oldTable;
+	}
+
+	/**
+	 * Query the named transition table, which SPI knows once it is connected
+	 * for this trigger, with the adaptive fetch size. The statement is kept by
+	 * the caller, to be closed with the reader by {@link #closeTransitionTables}.
+	 */
+	private ColumnBatchReader openTransitionTable(
+		boolean isNew, Statement stmt)
+	throws SQLException
+	{
+		String name;
+		synchronized(Backend.THREADLOCK)
+		{
+			name = _getTransitionTableName(this.getNativePointer(), isNew);
+		}
+		if (name == null)
+			return null;
+
+		stmt.setFetchSize(0);
+		ResultSet rs = stmt.executeQuery(
+			"SELECT * FROM \"" + name.replace("\"", "\"\"") + "\"");
+		return rs.unwrap(ColumnBatchReader.class);
+	}
+
+	/**
+	 * Close the transition table readers, if any were opened, and the
+	 * statements that produced them.
+	 */
+	private void closeTransitionTables() throws SQLException
+	{
+		ColumnBatchReader newTable = m_newTable;
+		ColumnBatchReader oldTable = m_oldTable;
+		Statement newStmt = m_newTableStatement;
+		Statement oldStmt = m_oldTableStatement;
+		m_newTable = null;
+		m_oldTable = null;
+		m_newTableStatement = null;
+		m_oldTableStatement = null;
+		try
+		{
+			if (newTable != null)
+				newTable.close();
+		}
+		finally
+		{
+			try
+			{
+				if (newStmt != null)
+					newStmt.close();
+			}
+			finally
+			{
+				try
+				{
+					if (oldTable != null)
+						oldTable.close();
+				}
+				finally
+				{
+					if (oldStmt != null)
+						oldStmt.close();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Commits the changes made on the <code>ResultSet</code> representing
 	 * <code>new</code> and returns the native pointer of new tuple. This
@@ -116,6 +213,8 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 	 */
 	public long getTriggerReturnTuple() throws SQLException
 	{
+		this.closeTransitionTables();
+
 		if(this.isFiredForStatement() || this.isFiredAfter() || m_suppress)
 			//
 			// Only triggers fired for each row, and not AFTER, can have a
@@ -124,17 +223,8 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 			//
 			return 0;
 
-		if (m_new != null)
-		{
-			Object[] changes = m_new.getChangeIndexesAndValues();
-			if (changes != null)
-			{
-				Tuple original = (Tuple)changes[0];
-				int[] indexes = (int[])changes[1];
-				Object[] values = (Object[])changes[2];
-				return this.getRelation().modifyTuple(original, indexes, values).getNativePointer();
-			}
-		}
+		if (m_new != null && m_new.rowUpdated())
+			return m_new.getModifiedTuple(this.getRelation()).getNativePointer();
 
 		// Return the original tuple.
 		//
@@ -170,6 +260,27 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 		return m_relation;
 	}
 
+	/**
+	 * Returns the descriptor of the Tuples exposed by this trigger. The same
+	 * descriptor serves every firing of a trigger on the same relation, until
+	 * the relation is altered.
+	 * 
+	 * @throws SQLException
+	 *             if the contained native buffer has gone stale.
+	 */
+	private TupleDesc getTupleDesc()
+	throws SQLException
+	{
+		if(m_tupleDesc == null)
+		{
+			synchronized(Backend.THREADLOCK)
+			{
+				m_tupleDesc = _getTupleDesc(this.getNativePointer());
+			}
+		}
+		return m_tupleDesc;
+	}
+
 	/**
 	 * Returns a <code>Tuple</code> reflecting the row for which the trigger
 	 * was fired. This is the row being inserted, updated, or deleted. If this
@@ -364,6 +475,7 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 
 	protected native void _free(long pointer);
 	private static native Relation _getRelation(long pointer) throws SQLException;
+	private static native TupleDesc _getTupleDesc(long pointer) throws SQLException;
 	private static native Tuple _getTriggerTuple(long pointer) throws SQLException;
 	private static native Tuple _getNewTuple(long pointer) throws SQLException;
 	private static native String[] _getArguments(long pointer) throws SQLException;
@@ -375,4 +487,5 @@ public class TriggerData extends JavaWrapper implements org.postgresql.pljava.Tr
 	private static native boolean _isFiredByDelete(long pointer) throws SQLException;
 	private static native boolean _isFiredByInsert(long pointer) throws SQLException;
 	private static native boolean _isFiredByUpdate(long pointer) throws SQLException;
+	private static native String _getTransitionTableName(long pointer, boolean isNew) throws SQLException;
 }
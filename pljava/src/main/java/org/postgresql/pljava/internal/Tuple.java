@@ -51,6 +51,69 @@ public class Tuple extends JavaWrapper
 		}
 	}
 
+	/**
+	 * Obtains the value of an {@code int2} or {@code int4} column, without
+	 * creating an object.
+	 * @param tupleDesc The Tuple descriptor for this instance.
+	 * @param index Index of value in the structure (one based).
+	 * @param wasNull The first element is set to whether the value is null,
+	 * in which case zero is returned.
+	 * @throws SQLException If the column is of another type, or the
+	 * underlying native structure has gone stale.
+	 */
+	public int getInt(TupleDesc tupleDesc, int index, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getInt(this.getNativePointer(),
+				tupleDesc.getNativePointer(), index, wasNull);
+		}
+	}
+
+	/**
+	 * Obtains the value of an {@code int2}, {@code int4}, or {@code int8}
+	 * column, as for {@link #getInt getInt}.
+	 */
+	public long getLong(TupleDesc tupleDesc, int index, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getLong(this.getNativePointer(),
+				tupleDesc.getNativePointer(), index, wasNull);
+		}
+	}
+
+	/**
+	 * Obtains the value of a {@code float4} or {@code float8} column, as for
+	 * {@link #getInt getInt}.
+	 */
+	public double getDouble(TupleDesc tupleDesc, int index, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getDouble(this.getNativePointer(),
+				tupleDesc.getNativePointer(), index, wasNull);
+		}
+	}
+
+	/**
+	 * Obtains the value of a {@code bool} column, as for
+	 * {@link #getInt getInt}; a null value is returned as false.
+	 */
+	public boolean getBoolean(
+		TupleDesc tupleDesc, int index, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getBoolean(this.getNativePointer(),
+				tupleDesc.getNativePointer(), index, wasNull);
+		}
+	}
+
 	/**
 	 * Calls the backend function heap_freetuple(HeapTuple tuple)
 	 * @param pointer The native pointer to the source HeapTuple
@@ -60,4 +123,20 @@ public class Tuple extends JavaWrapper
 	private static native Object _getObject(
 		long pointer, long tupleDescPointer, int index, Class<?> type)
 	throws SQLException;
+
+	private static native int _getInt(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
+
+	private static native long _getLong(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
+
+	private static native double _getDouble(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
+
+	private static native boolean _getBoolean(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
 }
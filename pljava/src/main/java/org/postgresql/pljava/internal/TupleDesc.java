@@ -7,17 +7,46 @@
 package org.postgresql.pljava.internal;
 
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The <code>TupleDesc</code> correspons to the internal PostgreSQL
  * <code>TupleDesc</code>.
+ *<p>
+ * The names and type Oids of the columns are fetched from the native
+ * descriptor together, the first time any of them is needed, and kept with
+ * a map from column name to index, so looking up a column by name is a hash
+ * lookup rather than a native call. A descriptor may be shared, for as long
+ * as its relation or row type is unchanged, by every result that it
+ * describes, so what is loaded lazily is built completely before it is
+ * published through a volatile field, and never changed after.
  *
  * @author Thomas Hallgren
  */
 public class TupleDesc extends JavaWrapper
 {
 	private final int m_size;
-	private Class[] m_columnClasses;
+	private volatile Class<?>[] m_columnClasses;
+	private volatile Columns m_columns;
+
+	/**
+	 * The names and type Oids of the columns, and the index of each name,
+	 * loaded together and not changed after.
+	 */
+	private static final class Columns
+	{
+		final String[] names;
+		final Oid[] types;
+		final Map<String,Integer> indexes;
+
+		Columns(String[] names, Oid[] types, Map<String,Integer> indexes)
+		{
+			this.names = names;
+			this.types = types;
+			this.indexes = indexes;
+		}
+	}
 
 	TupleDesc(long pointer, int size) throws SQLException
 	{
@@ -35,6 +64,8 @@ public class TupleDesc extends JavaWrapper
 	public String getColumnName(int index)
 	throws SQLException
 	{
+		if(index > 0 && index <= m_size)
+			return this.getColumns().names[index-1];
 		synchronized(Backend.THREADLOCK)
 		{
 			return _getColumnName(this.getNativePointer(), index);
@@ -51,9 +82,16 @@ public class TupleDesc extends JavaWrapper
 	public int getColumnIndex(String colName)
 	throws SQLException
 	{
+		colName = colName.toLowerCase();
+		Integer index = this.getColumns().indexes.get(colName);
+		if(index != null)
+			return index.intValue();
+
+		// A system column, or no column at all.
+		//
 		synchronized(Backend.THREADLOCK)
 		{
-			return _getColumnIndex(this.getNativePointer(), colName.toLowerCase());
+			return _getColumnIndex(this.getNativePointer(), colName);
 		}
 	}
 
@@ -88,17 +126,15 @@ public class TupleDesc extends JavaWrapper
 	public Class getColumnClass(int index)
 	throws SQLException
 	{
-		if(m_columnClasses == null)
+		Class<?>[] classes = m_columnClasses;
+		if(classes == null)
 		{
-			m_columnClasses = new Class[m_size];
-			synchronized(Backend.THREADLOCK)
-			{				
-				long _this = this.getNativePointer();
-				for(int idx = 0; idx < m_size; ++idx)
-					m_columnClasses[idx] = _getOid(_this, idx+1).getJavaClass();
-			}
+			classes = new Class<?>[m_size];
+			for(int idx = 0; idx < m_size; ++idx)
+				classes[idx] = this.getOid(idx+1).getJavaClass();
+			m_columnClasses = classes;
 		}
-		return m_columnClasses[index-1];
+		return classes[index-1];
 	}
 
 	/**
@@ -107,12 +143,56 @@ public class TupleDesc extends JavaWrapper
 	public Oid getOid(int index)
 	throws SQLException
 	{
+		if(index > 0 && index <= m_size)
+		{
+			Oid oid = this.getColumns().types[index-1];
+			if(oid != null)
+				return oid;
+		}
 		synchronized(Backend.THREADLOCK)
 		{
 			return _getOid(this.getNativePointer(), index);
 		}
 	}
 
+	private Columns getColumns()
+	throws SQLException
+	{
+		Columns columns = m_columns;
+		if(columns == null)
+			m_columns = columns = this.loadColumns();
+		return columns;
+	}
+
+	/**
+	 * Fetch the names and type Oids of all columns in one native call, and
+	 * map each name to its index. A dropped column has no type Oid and is not
+	 * mapped; where names are repeated, the first column is mapped, as
+	 * {@code SPI_fnumber} would find it. Threads that race to load them each
+	 * get an equal result, and whichever is published last is kept.
+	 */
+	private Columns loadColumns()
+	throws SQLException
+	{
+		String[] names = new String[m_size];
+		int[] typeIds = new int[m_size];
+		synchronized(Backend.THREADLOCK)
+		{
+			_getColumns(this.getNativePointer(), names, typeIds);
+		}
+
+		Oid[] types = new Oid[m_size];
+		Map<String,Integer> indexes = new HashMap<>(m_size * 2);
+		for(int idx = m_size; idx-- > 0;)
+		{
+			if(typeIds[idx] == 0)
+				continue;
+			types[idx] = new Oid(typeIds[idx]);
+			indexes.put(names[idx], idx + 1);
+		}
+		return new Columns(names, types, indexes);
+	}
+
 	/**
 	 * Calls the backend function FreeTupleDesc(TupleDesc desc)
 	 * @param pointer The native pointer to the source TupleDesc
@@ -123,4 +203,5 @@ public class TupleDesc extends JavaWrapper
 	private static native int _getColumnIndex(long _this, String colName) throws SQLException;
 	private static native Tuple _formTuple(long _this, Object[] values) throws SQLException;
 	private static native Oid _getOid(long _this, int index) throws SQLException;
+	private static native void _getColumns(long _this, String[] names, int[] typeIds) throws SQLException;
 }
@@ -121,7 +121,7 @@ public class BlobValue extends InputStream implements Blob
 		}
 		else
 		{
-			byte[] trBuf = new byte[1024];
+			byte[] trBuf = new byte[(int)Math.min(m_nBytes, 64 * 1024)];
 			int br;
 			while((br = m_stream.read(trBuf)) > 0)
 			{
@@ -28,6 +28,8 @@ import java.net.URL;
 import java.util.Calendar;
 import java.util.Map;
 
+import org.postgresql.pljava.internal.Oid;
+
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -40,12 +42,30 @@ import java.io.UnsupportedEncodingException;
  * {@link #wasNull wasNull}, and provides {@link #getObjectValue(int)} as the
  * chief method for subclasses to implement; turns most updaters into
  * {@link #updateObject(int,Object)}.
+ *<p>
+ * A subclass that can read a column of an integral, floating point, or
+ * boolean type directly as a Java primitive overrides
+ * {@link #getPrimitiveColumnType getPrimitiveColumnType} and the
+ * {@code get...Value} methods, and the numeric and boolean getters then use
+ * those instead of creating a boxed object for each value.
  * @author Thomas Hallgren
  */
 public abstract class ObjectResultSet extends AbstractResultSet
 {
 	private boolean m_wasNull = false;
 
+	/**
+	 * Receives the null indicator from the primitive {@code get...Value}
+	 * methods.
+	 */
+	private final boolean[] m_primitiveNull = new boolean[1];
+
+	private static final int NOT_PRIMITIVE = 0;
+	private static final int INT_COLUMN = 1;
+	private static final int LONG_COLUMN = 2;
+	private static final int DOUBLE_COLUMN = 3;
+	private static final int BOOLEAN_COLUMN = 4;
+
 	/**
 	 * Returns a private value updated by final methods in this class.
 	 */
@@ -162,6 +182,12 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public boolean getBoolean(int columnIndex)
 	throws SQLException
 	{
+		if(this.primitiveKind(columnIndex) == BOOLEAN_COLUMN)
+		{
+			boolean v = this.getBooleanValue(columnIndex, m_primitiveNull);
+			m_wasNull = m_primitiveNull[0];
+			return v;
+		}
 		Boolean b = (Boolean)this.getValue(columnIndex, Boolean.class);
 		return (b == null) ? false : b.booleanValue();
 	}
@@ -173,6 +199,15 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public byte getByte(int columnIndex)
 	throws SQLException
 	{
+		switch(this.primitiveKind(columnIndex))
+		{
+		case INT_COLUMN:
+			return (byte)this.readInt(columnIndex);
+		case LONG_COLUMN:
+			return (byte)this.readLong(columnIndex);
+		case DOUBLE_COLUMN:
+			return (byte)this.readDouble(columnIndex);
+		}
 		Number b = this.getNumber(columnIndex, byte.class);
 		return (b == null) ? 0 : b.byteValue();
 	}
@@ -236,6 +271,15 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public double getDouble(int columnIndex)
 	throws SQLException
 	{
+		switch(this.primitiveKind(columnIndex))
+		{
+		case INT_COLUMN:
+			return this.readInt(columnIndex);
+		case LONG_COLUMN:
+			return this.readLong(columnIndex);
+		case DOUBLE_COLUMN:
+			return this.readDouble(columnIndex);
+		}
 		Number d = this.getNumber(columnIndex, double.class);
 		return (d == null) ? 0 : d.doubleValue();
 	}
@@ -247,6 +291,15 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public float getFloat(int columnIndex)
 	throws SQLException
 	{
+		switch(this.primitiveKind(columnIndex))
+		{
+		case INT_COLUMN:
+			return this.readInt(columnIndex);
+		case LONG_COLUMN:
+			return this.readLong(columnIndex);
+		case DOUBLE_COLUMN:
+			return (float)this.readDouble(columnIndex);
+		}
 		Number f = this.getNumber(columnIndex, float.class);
 		return (f == null) ? 0 : f.floatValue();
 	}
@@ -258,6 +311,15 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public int getInt(int columnIndex)
 	throws SQLException
 	{
+		switch(this.primitiveKind(columnIndex))
+		{
+		case INT_COLUMN:
+			return this.readInt(columnIndex);
+		case LONG_COLUMN:
+			return (int)this.readLong(columnIndex);
+		case DOUBLE_COLUMN:
+			return (int)this.readDouble(columnIndex);
+		}
 		Number i = this.getNumber(columnIndex, int.class);
 		return (i == null) ? 0 : i.intValue();
 	}
@@ -269,6 +331,14 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public long getLong(int columnIndex)
 	throws SQLException
 	{
+		switch(this.primitiveKind(columnIndex))
+		{
+		case INT_COLUMN:
+		case LONG_COLUMN:
+			return this.readLong(columnIndex);
+		case DOUBLE_COLUMN:
+			return (long)this.readDouble(columnIndex);
+		}
 		Number l = this.getNumber(columnIndex, long.class);
 		return (l == null) ? 0 : l.longValue();
 	}
@@ -316,6 +386,15 @@ public abstract class ObjectResultSet extends AbstractResultSet
 	public short getShort(int columnIndex)
 	throws SQLException
 	{
+		switch(this.primitiveKind(columnIndex))
+		{
+		case INT_COLUMN:
+			return (short)this.readInt(columnIndex);
+		case LONG_COLUMN:
+			return (short)this.readLong(columnIndex);
+		case DOUBLE_COLUMN:
+			return (short)this.readDouble(columnIndex);
+		}
 		Number s = this.getNumber(columnIndex, short.class);
 		return (s == null) ? 0 : s.shortValue();
 	}
@@ -662,6 +741,109 @@ public abstract class ObjectResultSet extends AbstractResultSet
 		return SPIConnection.basicNumericCoersion(cls, value);
 	}
 
+	/**
+	 * Which of the primitive {@code get...Value} methods can read the column,
+	 * if any.
+	 */
+	private int primitiveKind(int columnIndex)
+	throws SQLException
+	{
+		Oid type = this.getPrimitiveColumnType(columnIndex);
+		if(type == null)
+			return NOT_PRIMITIVE;
+		if(TypeOid.INT4.equals(type) || TypeOid.INT2.equals(type))
+			return INT_COLUMN;
+		if(TypeOid.INT8.equals(type))
+			return LONG_COLUMN;
+		if(TypeOid.FLOAT8.equals(type) || TypeOid.FLOAT4.equals(type))
+			return DOUBLE_COLUMN;
+		if(TypeOid.BOOL.equals(type))
+			return BOOLEAN_COLUMN;
+		return NOT_PRIMITIVE;
+	}
+
+	private int readInt(int columnIndex)
+	throws SQLException
+	{
+		int v = this.getIntValue(columnIndex, m_primitiveNull);
+		m_wasNull = m_primitiveNull[0];
+		return v;
+	}
+
+	private long readLong(int columnIndex)
+	throws SQLException
+	{
+		long v = this.getLongValue(columnIndex, m_primitiveNull);
+		m_wasNull = m_primitiveNull[0];
+		return v;
+	}
+
+	private double readDouble(int columnIndex)
+	throws SQLException
+	{
+		double v = this.getDoubleValue(columnIndex, m_primitiveNull);
+		m_wasNull = m_primitiveNull[0];
+		return v;
+	}
+
+	/**
+	 * Returns the type of a column if the subclass can read its values with
+	 * the primitive {@code get...Value} methods, or null to have every value
+	 * read with {@link #getObjectValue(int) getObjectValue}.
+	 *<p>
+	 * Returns null if not overridden in a subclass. A subclass that overrides
+	 * it must read {@code int2} and {@code int4} columns with
+	 * {@link #getIntValue getIntValue}, those and {@code int8} with
+	 * {@link #getLongValue getLongValue}, {@code float4} and {@code float8}
+	 * with {@link #getDoubleValue getDoubleValue}, and {@code bool} with
+	 * {@link #getBooleanValue getBooleanValue}.
+	 */
+	protected Oid getPrimitiveColumnType(int columnIndex)
+	throws SQLException
+	{
+		return null;
+	}
+
+	/**
+	 * Reads an {@code int2} or {@code int4} column without boxing, storing
+	 * whether it was null in {@code wasNull[0]}.
+	 */
+	protected int getIntValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		throw new UnsupportedFeatureException("Primitive column access");
+	}
+
+	/**
+	 * Reads an {@code int2}, {@code int4}, or {@code int8} column without
+	 * boxing, storing whether it was null in {@code wasNull[0]}.
+	 */
+	protected long getLongValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		throw new UnsupportedFeatureException("Primitive column access");
+	}
+
+	/**
+	 * Reads a {@code float4} or {@code float8} column without boxing,
+	 * storing whether it was null in {@code wasNull[0]}.
+	 */
+	protected double getDoubleValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		throw new UnsupportedFeatureException("Primitive column access");
+	}
+
+	/**
+	 * Reads a {@code bool} column without boxing, storing whether it was null
+	 * in {@code wasNull[0]}.
+	 */
+	protected boolean getBooleanValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		throw new UnsupportedFeatureException("Primitive column access");
+	}
+
 	/**
 	 * Implemented over {@link #getObject},
 	 * applies {@link SPIConnection#basicCoersion} to {@code cls}.
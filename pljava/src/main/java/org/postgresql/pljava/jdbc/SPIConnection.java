@@ -50,6 +50,7 @@ import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import org.postgresql.pljava.internal.Backend;
 import org.postgresql.pljava.internal.Oid;
 import org.postgresql.pljava.internal.PgSavepoint;
 
@@ -113,6 +114,19 @@ public class SPIConnection implements Connection
 		addType(URL.class, Types.DATALINK);
 	}
 
+	/**
+	 * Translations made by {@link #nativeSQL(String,int[]) nativeSQL}, kept
+	 * for as many statements as the prepared plan cache keeps plans.
+	 */
+	private static final SQLTranslationCache s_translations;
+
+	static
+	{
+		int cacheSize = Backend.getStatementCacheSize();
+		s_translations =
+			new SQLTranslationCache(cacheSize < 11 ? 11 : cacheSize);
+	}
+
 	private static final void addType(Class clazz, int sqlType)
 	{
 		s_sqlType2Class.put(clazz, new Integer(sqlType));
@@ -450,67 +464,88 @@ public class SPIConnection implements Connection
 	
 	/*
 	 * An internal nativeSQL that returns a count of substitutable parameters
-	 * detected, used in prepareStatement().
+	 * detected, used in prepareStatement(). The translation is cached, so a
+	 * statement issued repeatedly is only translated once.
 	 */
 	public String nativeSQL(String sql, int[] paramCountRet)
 	{
-		StringBuffer buf = new StringBuffer();
-		int len = sql.length();
-		char inQuote = 0;
-		int paramIndex = 1;
-		for(int idx = 0; idx < len; ++idx)
+		SQLTranslationCache.Translation t = s_translations.get(sql);
+		if(t == null)
 		{
-			char c = sql.charAt(idx);
-			switch(c)
-			{
-			case '\\':
-				// Next character is escaped. Keep both
-				// escape and the character.
-				//
-				buf.append(c);
-				if(++idx == len)
-					break;
-				c = sql.charAt(idx);
-				break;
-
-			case '\'':
-			case '"':
-				// Strings within quotes should not be subject
-				// to '?' -> '$n' substitution.
-				//
-				if(inQuote == c)
-					inQuote = 0;
-				else if(inQuote == 0)
-					inQuote = c;
-				break;
-			
-			case '?':
-				if(inQuote == 0)
-				{
-					buf.append('$');
-					buf.append(paramIndex++);
-					continue;
-				}
-				break;
-			
-			default:
-				if(inQuote == 0 && Character.isWhitespace(c))
-				{
-					// Strip of multiple whitespace outside of
-					// strings.
-					//
-					++idx;
-					while(idx < len && Character.isWhitespace(sql.charAt(idx)))
-						++idx;
-					--idx;
-					c = ' ';
-				}
-			}
-			buf.append(c);
+			t = SQLTranslationCache.translate(sql);
+			s_translations.put(sql, t);
 		}
 		if(paramCountRet != null)
-			paramCountRet[0] = paramIndex - 1;
-		return buf.toString();
+			paramCountRet[0] = t.m_paramCount;
+		return t.m_sql;
+	}
+
+	/**
+	 * Return a snapshot of the counters of the cache used by
+	 * {@link #nativeSQL(String,int[]) nativeSQL}.
+	 *<p>
+	 * The counters are cumulative for the life of the backend.
+	 * @return the statistics, in a freshly-allocated object.
+	 */
+	public static TranslationCacheStatistics getTranslationCacheStatistics()
+	{
+		SQLTranslationCache tc = s_translations;
+		return new TranslationCacheStatistics(tc.getHits(),
+			tc.getMisses(), tc.size(), tc.capacity());
+	}
+
+	/**
+	 * Immutable snapshot of the {@code nativeSQL} translation cache counters,
+	 * as returned by
+	 * {@link #getTranslationCacheStatistics getTranslationCacheStatistics}.
+	 */
+	public static final class TranslationCacheStatistics
+	{
+		private final long m_hits;
+		private final long m_misses;
+		private final int m_size;
+		private final int m_capacity;
+
+		TranslationCacheStatistics(
+			long hits, long misses, int size, int capacity)
+		{
+			m_hits = hits;
+			m_misses = misses;
+			m_size = size;
+			m_capacity = capacity;
+		}
+
+		/**
+		 * Number of statements whose translation was found in the cache.
+		 */
+		public long getHits()
+		{
+			return m_hits;
+		}
+
+		/**
+		 * Number of statements that had to be translated.
+		 */
+		public long getMisses()
+		{
+			return m_misses;
+		}
+
+		/**
+		 * Number of translations in the cache.
+		 */
+		public int getSize()
+		{
+			return m_size;
+		}
+
+		/**
+		 * Maximum number of translations the cache will hold.
+		 */
+		public int getCapacity()
+		{
+			return m_capacity;
+		}
 	}
 
 	/**
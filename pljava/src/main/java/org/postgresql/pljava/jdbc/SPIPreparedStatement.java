@@ -38,6 +38,7 @@ import java.sql.Types;
 import java.sql.SQLXML;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 
 import org.postgresql.pljava.internal.ExecutionPlan;
 import org.postgresql.pljava.internal.Oid;
@@ -54,6 +55,15 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 	private final String   m_statement;
 	private ExecutionPlan  m_plan;
 
+	/*
+	 * For a statement from SPIStatementPool, the pool, the SQL it is pooled
+	 * under, and the pool's generation when it was handed out. Its plan, not
+	 * the statement itself, goes back to the pool when it is closed.
+	 */
+	SPIStatementPool m_pool;
+	String           m_poolKey;
+	int              m_poolGeneration;
+
 	public SPIPreparedStatement(SPIConnection conn, String statement, int paramCount)
 	{
 		super(conn);
@@ -64,15 +74,40 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 		Arrays.fill(m_sqlTypes, Types.NULL);
 	}
 
+	/**
+	 * A new statement that takes over a plan already prepared, with the
+	 * parameter types it was prepared for, as handed out by
+	 * {@link SPIStatementPool}.
+	 */
+	SPIPreparedStatement(
+		SPIConnection conn, String statement, Oid[] typeIds, ExecutionPlan plan)
+	{
+		this(conn, statement, typeIds.length);
+		System.arraycopy(typeIds, 0, m_typeIds, 0, typeIds.length);
+		m_plan = plan;
+	}
+
+	/**
+	 * Close the statement. If it came from a {@link SPIStatementPool} that
+	 * will take it back, its plan is returned to the pool rather than
+	 * released. Either way, this statement is closed, and closing it again
+	 * does nothing.
+	 */
 	@Override
 	public void close()
 	throws SQLException
 	{
-		if(m_plan != null)
-		{
-			m_plan.close();
-			m_plan = null;
-		}
+		if(this.isClosed())
+			return;
+
+		ExecutionPlan plan = m_plan;
+		m_plan = null;
+		SPIStatementPool pool = m_pool;
+		m_pool = null;
+		if(plan != null && (pool == null || !pool.checkIn(
+			m_poolKey, m_poolGeneration, m_statement, m_typeIds, plan)))
+			plan.close();
+
 		this.clearParameters();
 		super.close();
 		Invocation.current().forgetStatement(this);
@@ -238,6 +273,7 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 		int columnIndex, Object value, int sqlType, TypeBridge<?>.Holder vAlt)
 	throws SQLException
 	{
+		this.assertOpen();
 		if(columnIndex < 1 || columnIndex > m_sqlTypes.length)
 			throw new SQLException("Illegal parameter index");
 
@@ -342,6 +378,7 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 	public boolean execute()
 	throws SQLException
 	{
+		this.assertOpen();
 		int[] sqlTypes = m_sqlTypes;
 		int idx = sqlTypes.length;
 		while(--idx >= 0)
@@ -370,6 +407,7 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 	public void addBatch()
 	throws SQLException
 	{
+		this.assertOpen();
 		this.internalAddBatch(new Object[]{m_values.clone(), m_sqlTypes.clone(), m_typeIds.clone()});
 		this.clearParameters(); // Parameters are cleared upon successful completion.
 	}
@@ -481,6 +519,7 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 	public void setNull(int columnIndex, int sqlType, String typeName)
 	throws SQLException
 	{
+		this.assertOpen();
 		Oid id = Oid.forTypeName(typeName);
 		Oid op = m_typeIds[--columnIndex];
 		if ( null == op )
@@ -525,6 +564,61 @@ public class SPIPreparedStatement extends SPIStatement implements PreparedStatem
 		return new SPIParameterMetaData(this.getSqlTypes());
 	}
 
+	/**
+	 * Execute the batch in runs of consecutive entries having the same
+	 * parameter types. Unless the statement returns a result set, each run
+	 * is executed with its saved plan in a single call into native code,
+	 * rather than with one call per entry.
+	 */
+	@Override
+	protected void executeBatchEntries(List<?> batch, long[] counts)
+	throws SQLException
+	{
+		int numBatches = counts.length;
+		int start = 0;
+		while(start < numBatches)
+		{
+			Oid[] typeIds = (Oid[])((Object[])batch.get(start))[2];
+			int end = start + 1;
+			while(end < numBatches && Arrays.equals(
+				typeIds, (Oid[])((Object[])batch.get(end))[2]))
+				++end;
+
+			for(int idx = start; idx < end; ++idx)
+				for(int sqlType : (int[])((Object[])batch.get(idx))[1])
+					if(sqlType == Types.NULL)
+						throw new SQLException(
+							"Not all parameters have been set");
+
+			if(!Arrays.equals(m_typeIds, typeIds))
+			{
+				if(m_plan != null)
+				{
+					m_plan.close();
+					m_plan = null;
+				}
+				System.arraycopy(typeIds, 0, m_typeIds, 0, m_typeIds.length);
+			}
+			if(m_plan == null)
+				m_plan = ExecutionPlan.prepare(m_statement, m_typeIds);
+
+			if(m_plan.isCursorPlan())
+			{
+				for(int idx = start; idx < end; ++idx)
+					counts[idx] = this.executeBatchEntry(batch.get(idx));
+			}
+			else
+			{
+				Object[][] paramSets = new Object[end - start][];
+				for(int idx = start; idx < end; ++idx)
+					paramSets[idx - start] =
+						(Object[])((Object[])batch.get(idx))[0];
+				this.executePlanBatch(m_plan, paramSets, counts, start);
+			}
+			start = end;
+		}
+	}
+
 	protected long executeBatchEntry(Object batchEntry)
 	throws SQLException
 	{
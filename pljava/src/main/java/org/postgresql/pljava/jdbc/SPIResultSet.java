@@ -16,6 +16,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSetMetaData;
 
+import org.postgresql.pljava.ColumnBatchReader;
+import org.postgresql.pljava.internal.Oid;
 import org.postgresql.pljava.internal.Portal;
 import org.postgresql.pljava.internal.SPI;
 import org.postgresql.pljava.internal.TupleTable;
@@ -27,14 +29,40 @@ import org.postgresql.pljava.internal.TupleDesc;
  * org.postgresql.pljava.internal.Portal Portal}. At present, only
  * forward positioning is implemented. Attempts to use reverse or
  * absolute positioning will fail.
+ *<p>
+ * Rows are read from the portal in batches of {@link #getFetchSize} rows. A
+ * fetch size of zero, set on the statement before it is executed, selects an
+ * adaptive size instead: the first batch is small, and each following batch
+ * doubles, up to a limit derived from the average width of the rows fetched
+ * so far. A consumer that reads only a few rows pays for a small fetch, while
+ * one that reads the whole result soon fetches in large batches.
+ *<p>
+ * The rows can instead be read a batch at a time in column-major form, through
+ * the {@link ColumnBatchReader} interface obtained with {@link #unwrap unwrap}.
  *
  * @author Thomas Hallgren
  */
-public class SPIResultSet extends ResultSetBase
+public class SPIResultSet extends ResultSetBase implements ColumnBatchReader
 {
+	/**
+	 * Rows in the first batch when the fetch size is adaptive.
+	 */
+	private static final int ADAPTIVE_INITIAL_ROWS = 64;
+
+	/**
+	 * Largest batch, in rows, when the fetch size is adaptive.
+	 */
+	private static final int ADAPTIVE_MAX_ROWS = 1 << 20;
+
+	/**
+	 * Approximate size in bytes that an adaptive batch may grow to.
+	 */
+	private static final long ADAPTIVE_TARGET_BYTES = 8L << 20;
+
 	private final SPIStatement m_statement;
 	private final Portal    m_portal;
 	private final TupleDesc m_tupleDesc;
+	private SPIResultSetMetaData m_metaData;
 	private final long      m_maxRows;
 
 	private Tuple m_currentRow;
@@ -43,6 +71,14 @@ public class SPIResultSet extends ResultSetBase
 	private TupleTable m_table;
 	private int m_tableRow;
 
+	private int m_adaptiveRows = ADAPTIVE_INITIAL_ROWS;
+
+	private boolean  m_batching;
+	private int      m_batchRows;
+	private Object[] m_batchData;
+	private Object[] m_batchOffsets;
+	private Object[] m_batchNulls;
+
 	SPIResultSet(SPIStatement statement, Portal portal, long maxRows)
 	throws SQLException
 	{
@@ -66,6 +102,9 @@ public class SPIResultSet extends ResultSetBase
 			m_tableRow   = -1;
 			m_currentRow = null;
 			m_nextRow    = null;
+			m_batchData    = null;
+			m_batchOffsets = null;
+			m_batchNulls   = null;
 			super.close();
 		}
 	}
@@ -125,35 +164,21 @@ public class SPIResultSet extends ResultSetBase
 	}
 
 	/**
-	 * Get a(nother) table of {@link #getFetchSize} rows from the
-	 * {@link Portal}.
+	 * Get a(nother) table of {@link #getFetchSize} rows, or of the current
+	 * adaptive size if that is zero, from the {@link Portal}.
 	 */
 	protected final TupleTable getTupleTable()
 	throws SQLException
 	{
 		if(m_table == null)
 		{
-			Portal portal = this.getPortal();
-			if(portal.isAtEnd())
+			long mx = this.getFetchCount();
+			if(mx == 0)
 				return null;
 
-			long mx;
-			int fetchSize = this.getFetchSize();
-			if(m_maxRows > 0)
-			{
-				mx = m_maxRows - portal.getPortalPos();
-				if(mx <= 0)
-					return null;
-				if(mx > fetchSize)
-					mx = fetchSize;
-			}
-			else
-				mx = fetchSize;
-
 			try
 			{
-				long result = portal.fetch(true, mx);
-				if(result > 0)
+				if(this.fetch(mx) > 0)
 					m_table = SPI.getTupTable(m_tupleDesc);
 				m_tableRow = -1;
 			}
@@ -165,6 +190,60 @@ public class SPIResultSet extends ResultSetBase
 		return m_table;
 	}
 
+	/**
+	 * Return the number of rows the next fetch should ask for, or zero if
+	 * there are no more to fetch.
+	 */
+	private long getFetchCount()
+	throws SQLException
+	{
+		Portal portal = this.getPortal();
+		if(portal.isAtEnd())
+			return 0;
+
+		long mx;
+		int fetchSize = this.getFetchSize();
+		if(0 == fetchSize)
+			fetchSize = m_adaptiveRows;
+		if(m_maxRows > 0)
+		{
+			mx = m_maxRows - portal.getPortalPos();
+			if(mx <= 0)
+				return 0;
+			if(mx > fetchSize)
+				mx = fetchSize;
+		}
+		else
+			mx = fetchSize;
+		return mx;
+	}
+
+	/**
+	 * Fetch up to <em>count</em> rows into {@code SPI_tuptable}, adapting the
+	 * fetch size if it is adaptive, and return the number fetched. The caller
+	 * must free the tuple table.
+	 */
+	private long fetch(long count)
+	throws SQLException
+	{
+		long result = m_portal.fetch(true, count);
+		if(result > 0 && 0 == this.getFetchSize())
+			adaptFetchSize(result, SPI.getTupTableSize());
+		return result;
+	}
+
+	/**
+	 * Choose the next adaptive batch size: double the last one, but limited to
+	 * about {@link #ADAPTIVE_TARGET_BYTES} at the observed row width.
+	 */
+	private void adaptFetchSize(long rows, long bytes)
+	{
+		long width = Math.max(1L, bytes / rows);
+		long limit = Math.max(ADAPTIVE_INITIAL_ROWS,
+			Math.min(ADAPTIVE_MAX_ROWS, ADAPTIVE_TARGET_BYTES / width));
+		m_adaptiveRows = (int)Math.min(limit, 2L * m_adaptiveRows);
+	}
+
 	/**
 	 * Return the {@link Tuple} most recently returned by {@link #next}.
 	 */
@@ -186,6 +265,10 @@ public class SPIResultSet extends ResultSetBase
 		if(m_nextRow != null)
 			return m_nextRow;
 
+		if(m_batching)
+			throw new SQLException(
+				"ResultSet is being read by ColumnBatchReader", "55000");
+
 		TupleTable table = this.getTupleTable();
 		if(table == null)
 			return null;
@@ -204,6 +287,123 @@ public class SPIResultSet extends ResultSetBase
 		return m_nextRow;
 	}
 
+	@Override // defined in ColumnBatchReader
+	public boolean nextBatch()
+	throws SQLException
+	{
+		if(m_currentRow != null || m_nextRow != null || m_table != null)
+			throw new SQLException(
+				"ResultSet is being read by next()", "55000");
+		m_batching     = true;
+		m_batchRows    = 0;
+		m_batchData    = null;
+		m_batchOffsets = null;
+		m_batchNulls   = null;
+
+		long mx = this.getFetchCount();
+		if(mx == 0)
+			return false;
+
+		int columns = m_tupleDesc.size();
+		Object[] data = new Object[columns];
+		Object[] offsets = new Object[columns];
+		Object[] nulls = new Object[columns];
+		try
+		{
+			if(this.fetch(mx) == 0)
+				return false;
+			m_batchRows = SPI.getTupTableColumns(data, offsets, nulls);
+		}
+		finally
+		{
+			SPI.freeTupTable();
+		}
+		m_batchData    = data;
+		m_batchOffsets = offsets;
+		m_batchNulls   = nulls;
+		return true;
+	}
+
+	@Override // defined in ColumnBatchReader
+	public int getBatchRowCount()
+	throws SQLException
+	{
+		return m_batchRows;
+	}
+
+	@Override // defined in ColumnBatchReader
+	public int[] getIntColumn(int columnIndex)
+	throws SQLException
+	{
+		return this.getBatchColumn(m_batchData, columnIndex, int[].class);
+	}
+
+	@Override // defined in ColumnBatchReader
+	public long[] getLongColumn(int columnIndex)
+	throws SQLException
+	{
+		return this.getBatchColumn(m_batchData, columnIndex, long[].class);
+	}
+
+	@Override // defined in ColumnBatchReader
+	public double[] getDoubleColumn(int columnIndex)
+	throws SQLException
+	{
+		return this.getBatchColumn(m_batchData, columnIndex, double[].class);
+	}
+
+	@Override // defined in ColumnBatchReader
+	public byte[] getBytesColumn(int columnIndex)
+	throws SQLException
+	{
+		return this.getBatchColumn(m_batchData, columnIndex, byte[].class);
+	}
+
+	@Override // defined in ColumnBatchReader
+	public int[] getBytesOffsets(int columnIndex)
+	throws SQLException
+	{
+		return this.getBatchColumn(m_batchOffsets, columnIndex, int[].class);
+	}
+
+	@Override // defined in ColumnBatchReader
+	public long[] getNullBitmap(int columnIndex)
+	throws SQLException
+	{
+		this.getBatchColumn(m_batchData, columnIndex, Object.class);
+		return (long[])m_batchNulls[columnIndex - 1];
+	}
+
+	@Override // defined in ColumnBatchReader
+	public boolean isNull(int columnIndex, int row)
+	throws SQLException
+	{
+		long[] nulls = this.getNullBitmap(columnIndex);
+		if(row < 0 || row >= m_batchRows)
+			throw new SQLException("Invalid row in batch: " + row);
+		return null != nulls && 0 != (nulls[row >>> 6] & (1L << (row & 63)));
+	}
+
+	/**
+	 * Return one column's element of <em>arrays</em> from the current batch,
+	 * if it has the expected class.
+	 */
+	private <T> T getBatchColumn(
+		Object[] arrays, int columnIndex, Class<T> form)
+	throws SQLException
+	{
+		if(m_batchData == null)
+			throw new SQLException("No current batch", "24000");
+		if(columnIndex < 1 || columnIndex > arrays.length)
+			throw new SQLException("Invalid column index: " + columnIndex);
+		Object column = arrays[columnIndex - 1];
+		if(!form.isInstance(column))
+			throw new SQLException("Column " + columnIndex +
+				" of the batch is not available as " +
+				form.getSimpleName(), "42804");
+		return form.cast(column);
+	}
+
 	/**
 	 * Implemented over
 	 * {@link Tuple#getObject Tuple.getObject(TupleDesc,int,Class)}.
@@ -216,12 +416,54 @@ public class SPIResultSet extends ResultSetBase
 	}
 
 	/**
-	 * Returns an {@link SPIResultSetMetaData} instance.
+	 * Returns the column's type from the {@link TupleDesc}, which keeps the
+	 * types of all columns once it has fetched them.
+	 */
+	@Override // defined in ObjectResultSet
+	protected Oid getPrimitiveColumnType(int columnIndex)
+	throws SQLException
+	{
+		return m_tupleDesc.getOid(columnIndex);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected int getIntValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return this.getCurrentRow().getInt(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected long getLongValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return this.getCurrentRow().getLong(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected double getDoubleValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return this.getCurrentRow().getDouble(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected boolean getBooleanValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return this.getCurrentRow().getBoolean(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	/**
+	 * Returns an {@link SPIResultSetMetaData} instance, the same one on every
+	 * call.
 	 */
 	@Override
 	public ResultSetMetaData getMetaData()
 	throws SQLException
 	{
-		return new SPIResultSetMetaData(m_tupleDesc);
+		if(m_metaData == null)
+			m_metaData = new SPIResultSetMetaData(m_tupleDesc);
+		return m_metaData;
 	}
 }
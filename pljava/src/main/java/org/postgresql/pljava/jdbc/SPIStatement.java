@@ -20,6 +20,7 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.postgresql.pljava.internal.ExecutionPlan;
 import org.postgresql.pljava.internal.Portal;
@@ -97,6 +98,22 @@ public class SPIStatement implements Statement, SPIReadOnlyControl
 		m_closed = true;
 	}
 
+	public boolean isClosed()
+	throws SQLException
+	{
+		return m_closed;
+	}
+
+	/**
+	 * Throw an exception if the statement has been closed.
+	 */
+	void assertOpen()
+	throws SQLException
+	{
+		if(m_closed)
+			throw new StatementClosedException();
+	}
+
 	public boolean execute(String statement)
 	throws SQLException
 	{
@@ -122,6 +139,23 @@ public class SPIStatement implements Statement, SPIReadOnlyControl
  		}
 	}
 
+	/**
+	 * Execute a plan that does not return a result set once for each of
+	 * <em>paramSets</em>, in one call into native code, storing the update
+	 * counts in <em>counts</em> from <em>offset</em> on.
+	 */
+	protected void executePlanBatch(ExecutionPlan plan, Object[][] paramSets,
+		long[] counts, int offset)
+	throws SQLException
+	{
+		m_updateCount = -1;
+		m_resultSet   = null;
+
+		long[] batchCounts =
+			plan.executeBatch(paramSets, m_readonly_spec, m_maxRows);
+		System.arraycopy(batchCounts, 0, counts, offset, batchCounts.length);
+	}
+
 	protected boolean executePlan(ExecutionPlan plan, Object[] paramValues)
 	throws SQLException
 	{
@@ -183,11 +217,11 @@ public class SPIStatement implements Statement, SPIReadOnlyControl
 	public int[] executeBatch()
 	throws SQLException
 	{
-		int numBatches = (m_batch == null) ? 0 : m_batch.size();
-		int[] result = new int[numBatches];
-		for(int idx = 0; idx < numBatches; ++idx)
+		long[] counts = this.executeLargeBatch();
+		int[] result = new int[counts.length];
+		for(int idx = 0; idx < counts.length; ++idx)
 		{
-			long count = this.executeBatchEntry(m_batch.get(idx));
+			long count = counts[idx];
 			result[idx] = (count > Integer.MAX_VALUE)
 				? SUCCESS_NO_INFO : (int)count;
 		}
@@ -199,10 +233,7 @@ public class SPIStatement implements Statement, SPIReadOnlyControl
 	{
 		int numBatches = (m_batch == null) ? 0 : m_batch.size();
 		long[] result = new long[numBatches];
-		for(int idx = 0; idx < numBatches; ++idx)
-		{
-			result[idx] = this.executeBatchEntry(m_batch.get(idx));
-		}
+		this.executeBatchEntries(m_batch, result);
 		return result;
 	}
 
@@ -416,6 +447,18 @@ public class SPIStatement implements Statement, SPIReadOnlyControl
 		m_batch.add(batch);
 	}
 
+	/**
+	 * Execute each entry of <em>batch</em>, storing its update count (or
+	 * {@code SUCCESS_NO_INFO}) in <em>counts</em>. This implementation
+	 * executes them one at a time with {@link #executeBatchEntry}.
+	 */
+	protected void executeBatchEntries(List<?> batch, long[] counts)
+	throws SQLException
+	{
+		for(int idx = 0; idx < counts.length; ++idx)
+			counts[idx] = this.executeBatchEntry(batch.get(idx));
+	}
+
 	protected long executeBatchEntry(Object batchEntry)
 	throws SQLException
 	{
@@ -484,15 +527,6 @@ public class SPIStatement implements Statement, SPIReadOnlyControl
 		  "0A000" );
 	}
 
-	public boolean isClosed()
-	throws SQLException
-	{
-	    throw new SQLFeatureNotSupportedException
-		( this.getClass()
-		  + ".isClosed() not implemented yet.",
-		  "0A000" );
-	}
-
 	public void closeOnCompletion() throws SQLException
 	{
 	    throw new SQLFeatureNotSupportedException
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.postgresql.pljava.StatementPool;
+import org.postgresql.pljava.internal.Backend;
+import org.postgresql.pljava.internal.ExecutionPlan;
+import org.postgresql.pljava.internal.Oid;
+
+/**
+ * The session's pool of prepared plans for {@link SPIPreparedStatement}s,
+ * keyed on the JDBC SQL text they were prepared from.
+ *<p>
+ * Each request gets a new statement, so a statement closed by one caller can
+ * never be the one another caller is using. Closing a pooled statement gives
+ * its plan, with the parameter types it was prepared for, back to the pool,
+ * and the next statement for the same SQL takes it over.
+ *<p>
+ * An idle plan stays checked out of the shared plan cache, so at most
+ * {@code pljava.statement_cache_size} plans are kept idle; a plan returned
+ * beyond that is closed in the ordinary way.
+ */
+public class SPIStatementPool implements StatementPool
+{
+	private static SPIStatementPool s_default;
+
+	private final SPIConnection m_connection = new SPIConnection();
+
+	private final Map<String,ArrayDeque<Idle>> m_idle = new HashMap<>();
+
+	private final int m_capacity;
+
+	private int m_idleCount;
+
+	/**
+	 * Incremented by {@link #clear clear}; a plan handed out before then is
+	 * not taken back.
+	 */
+	private int m_generation;
+
+	/**
+	 * An idle plan, with the native SQL and parameter types it was prepared
+	 * from.
+	 */
+	private static class Idle
+	{
+		final String        m_statement;
+		final Oid[]         m_typeIds;
+		final ExecutionPlan m_plan;
+
+		Idle(String statement, Oid[] typeIds, ExecutionPlan plan)
+		{
+			m_statement = statement;
+			m_typeIds   = typeIds;
+			m_plan      = plan;
+		}
+	}
+
+	private SPIStatementPool(int capacity)
+	{
+		m_capacity = capacity;
+	}
+
+	/**
+	 * Return the pool for this session.
+	 */
+	public static synchronized SPIStatementPool getDefault()
+	{
+		if(s_default == null)
+		{
+			int cacheSize = Backend.getStatementCacheSize();
+			s_default = new SPIStatementPool(cacheSize < 11 ? 11 : cacheSize);
+		}
+		return s_default;
+	}
+
+	/**
+	 * Close every idle plan in the session's pool, and make sure no plan now
+	 * in use is taken back. Called when the {@code sqlj} functions change
+	 * installed jars or classpaths.
+	 */
+	public static void clearDefault()
+	throws SQLException
+	{
+		SPIStatementPool pool;
+		synchronized(SPIStatementPool.class)
+		{
+			pool = s_default;
+		}
+		if(pool != null)
+			pool.clear();
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql)
+	throws SQLException
+	{
+		Idle idle = null;
+		int generation;
+		synchronized(this)
+		{
+			ArrayDeque<Idle> q = m_idle.get(sql);
+			if(q != null)
+			{
+				idle = q.pollFirst();
+				if(q.isEmpty())
+					m_idle.remove(sql);
+				-- m_idleCount;
+			}
+			generation = m_generation;
+		}
+
+		SPIPreparedStatement stmt;
+		if(idle != null)
+		{
+			stmt = new SPIPreparedStatement(m_connection,
+				idle.m_statement, idle.m_typeIds, idle.m_plan);
+			Invocation.current().manageStatement(stmt);
+		}
+		else
+			stmt = (SPIPreparedStatement)m_connection.prepareStatement(sql);
+
+		stmt.m_pool = this;
+		stmt.m_poolKey = sql;
+		stmt.m_poolGeneration = generation;
+		return stmt;
+	}
+
+	/**
+	 * Take back the plan of a statement being closed, returning false if the
+	 * plan should be closed instead.
+	 */
+	synchronized boolean checkIn(String key, int generation,
+		String statement, Oid[] typeIds, ExecutionPlan plan)
+	{
+		if(generation != m_generation || m_idleCount >= m_capacity)
+			return false;
+
+		ArrayDeque<Idle> q = m_idle.get(key);
+		if(q == null)
+		{
+			q = new ArrayDeque<>();
+			m_idle.put(key, q);
+		}
+		q.addFirst(new Idle(statement, typeIds.clone(), plan));
+		++ m_idleCount;
+		return true;
+	}
+
+	/**
+	 * Close every idle plan, and make sure no plan now in use is taken back.
+	 */
+	void clear()
+	throws SQLException
+	{
+		ArrayList<Idle> idle = new ArrayList<>();
+		synchronized(this)
+		{
+			++ m_generation;
+			for(ArrayDeque<Idle> q : m_idle.values())
+				idle.addAll(q);
+			m_idle.clear();
+			m_idleCount = 0;
+		}
+		for(Idle i : idle)
+			i.m_plan.close();
+	}
+}
@@ -20,6 +20,7 @@ import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -40,6 +41,7 @@ import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
 
+import org.postgresql.pljava.UDTCodec;
 import org.postgresql.pljava.internal.Backend;
 
 /**
@@ -56,6 +58,7 @@ import org.postgresql.pljava.internal.Backend;
 public class SQLInputFromChunk implements SQLInput
 {
 	private ByteBuffer m_bb;
+	private final ByteBuffer m_buffer;
 
 	private static ByteOrder scalarOrder;
 	private static ByteOrder mirrorOrder;
@@ -63,7 +66,7 @@ public class SQLInputFromChunk implements SQLInput
 	public SQLInputFromChunk(ByteBuffer bb, boolean isJavaBasedScalar)
 		throws SQLException
 	{
-		m_bb = bb;
+		m_bb = m_buffer = bb;
 		if ( isJavaBasedScalar )
 		{
 			if ( null == scalarOrder )
@@ -337,6 +340,33 @@ public class SQLInputFromChunk implements SQLInput
 		m_bb = null;
 	}
 
+	/**
+	 * Have a UDT that implements {@link UDTCodec} read itself directly from
+	 * the buffer.
+	 */
+	void read(UDTCodec value) throws SQLException
+	{
+		try
+		{
+			value.read(m_bb, m_bb.position());
+		}
+		catch ( BufferUnderflowException | IndexOutOfBoundsException e )
+		{
+			throw badRepresentation(e);
+		}
+	}
+
+	/**
+	 * Reopen an instance kept for reuse by the native code, once it has copied
+	 * the next value, of {@code length} bytes, into the original buffer.
+	 */
+	void reset(int length)
+	{
+		m_buffer.clear();
+		m_buffer.limit(length);
+		m_bb = m_buffer;
+	}
+
 	private SQLException badRepresentation(Throwable e)
 	{
 		if ( e instanceof NullPointerException )
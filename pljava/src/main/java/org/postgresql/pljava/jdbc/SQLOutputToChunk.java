@@ -47,6 +47,7 @@ import java.sql.Struct;
 import java.sql.Time;
 import java.sql.Timestamp;
 
+import org.postgresql.pljava.UDTCodec;
 import org.postgresql.pljava.internal.Backend;
 
 /**
@@ -66,6 +67,12 @@ public class SQLOutputToChunk implements SQLOutput
 
 	private long m_handle;
 	private ByteBuffer m_bb;
+	/*
+	 * Non-null only for an instance the native code keeps for reuse: a buffer
+	 * of fixed capacity, over memory the native code owns, which is reset for
+	 * each fixed-length value written and never grown.
+	 */
+	private ByteBuffer m_pooled;
 
 	private static ByteOrder scalarOrder;
 	private static ByteOrder mirrorOrder;
@@ -90,6 +97,18 @@ public class SQLOutputToChunk implements SQLOutput
 		}
 	}
 
+	/**
+	 * Constructor for an instance to be reused by the native code for
+	 * fixed-length types; it is closed until {@link #reset reset} is called.
+	 */
+	public SQLOutputToChunk(ByteBuffer bb, boolean isJavaBasedScalar)
+		throws SQLException
+	{
+		this(0L, bb, isJavaBasedScalar);
+		m_pooled = m_bb;
+		m_bb = null;
+	}
+
 	private ByteOrder getOrder(boolean isJavaBasedScalar) throws SQLException
 	{
 		ByteOrder result;
@@ -393,6 +412,50 @@ public class SQLOutputToChunk implements SQLOutput
 		m_bb = null;
 	}
 
+	/**
+	 * Have a UDT that implements {@link UDTCodec} write itself directly to the
+	 * buffer, which is limited meanwhile to {@code length} more bytes.
+	 */
+	void write(UDTCodec value, int length) throws SQLException
+	{
+		ensureCapacity(length);
+		int limit = m_bb.limit();
+		m_bb.limit(m_bb.position() + length);
+		try
+		{
+			value.write(m_bb);
+		}
+		catch ( BufferOverflowException | IndexOutOfBoundsException e )
+		{
+			throw badRepresentation(e);
+		}
+		finally
+		{
+			m_bb.limit(limit);
+		}
+	}
+
+	/**
+	 * Make a pooled instance writable again, for a value of exactly
+	 * {@code length} bytes.
+	 */
+	void reset(int length)
+	{
+		m_pooled.clear();
+		m_pooled.limit(length);
+		m_bb = m_pooled;
+	}
+
+	/**
+	 * Close a pooled instance, returning the number of bytes written.
+	 */
+	int finish()
+	{
+		int length = m_pooled.position();
+		m_bb = null;
+		return length;
+	}
+
 	private void throwOrRetry(Exception e, int needed, String fn)
 		throws SQLException
 	{
@@ -487,6 +550,14 @@ public class SQLOutputToChunk implements SQLOutput
 
 	private void ensureCapacity(int c) throws SQLException
 	{
+		if ( null != m_pooled )
+		{
+			if ( null == m_bb )
+				throw new SQLException("Stream is closed");
+			if ( m_bb.remaining() < c )
+				throw badRepresentation(new BufferOverflowException());
+			return;
+		}
 		synchronized(Backend.THREADLOCK)
 		{
 			if(m_handle == 0)
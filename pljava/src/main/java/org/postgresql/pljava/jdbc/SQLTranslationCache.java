@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.jdbc;
+
+import org.postgresql.pljava.internal.SegmentedLRUCache;
+
+/**
+ * Cache of the translations made by
+ * {@link SPIConnection#nativeSQL(String,int[]) SPIConnection.nativeSQL}, a
+ * {@link SegmentedLRUCache} as the prepared plan cache is.
+ *<p>
+ * Keyed on the JDBC statement text itself. A statement issued repeatedly from
+ * the same string constant presents the same {@code String} instance each
+ * time, so its (cached) hash code and the identity check in
+ * {@code String.equals} make a hit cheap; an equal string from elsewhere
+ * still finds the same entry.
+ */
+final class SQLTranslationCache
+extends SegmentedLRUCache<String,SQLTranslationCache.Translation>
+{
+	/**
+	 * The translated statement text and its number of parameters.
+	 */
+	static final class Translation
+	{
+		final String m_sql;
+
+		final int m_paramCount;
+
+		Translation(String sql, int paramCount)
+		{
+			m_sql = sql;
+			m_paramCount = paramCount;
+		}
+	}
+
+	SQLTranslationCache(int cacheSize)
+	{
+		super(cacheSize);
+	}
+
+	/**
+	 * Turn JDBC {@code ?} parameter markers outside of quotes into
+	 * {@code $n}, and squeeze runs of whitespace outside of quotes to one
+	 * space.
+	 */
+	static Translation translate(String sql)
+	{
+		StringBuilder buf = new StringBuilder(sql.length() + 16);
+		int len = sql.length();
+		char inQuote = 0;
+		int paramIndex = 1;
+		for(int idx = 0; idx < len; ++idx)
+		{
+			char c = sql.charAt(idx);
+			switch(c)
+			{
+			case '\\':
+				// Next character is escaped. Keep both
+				// escape and the character.
+				//
+				buf.append(c);
+				if(++idx == len)
+					break;
+				c = sql.charAt(idx);
+				break;
+
+			case '\'':
+			case '"':
+				// Strings within quotes should not be subject
+				// to '?' -> '$n' substitution.
+				//
+				if(inQuote == c)
+					inQuote = 0;
+				else if(inQuote == 0)
+					inQuote = c;
+				break;
+			
+			case '?':
+				if(inQuote == 0)
+				{
+					buf.append('$');
+					buf.append(paramIndex++);
+					continue;
+				}
+				break;
+			
+			default:
+				if(inQuote == 0 && Character.isWhitespace(c))
+				{
+					// Strip of multiple whitespace outside of
+					// strings.
+					//
+					++idx;
+					while(idx < len && Character.isWhitespace(sql.charAt(idx)))
+						++idx;
+					--idx;
+					c = ' ';
+				}
+			}
+			buf.append(c);
+		}
+		return new Translation(
+			buf.toString(), paramIndex - 1);
+	}
+}
@@ -17,6 +17,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import org.postgresql.pljava.internal.Backend;
+import org.postgresql.pljava.internal.Oid;
 import org.postgresql.pljava.internal.TupleDesc;
 
 /**
@@ -74,6 +75,61 @@ public class SingleRowReader extends SingleRowResultSet
 		}
 	}
 
+	/**
+	 * Returns the column's type from the {@link TupleDesc}, which keeps the
+	 * types of all columns once it has fetched them.
+	 */
+	@Override // defined in ObjectResultSet
+	protected Oid getPrimitiveColumnType(int columnIndex)
+	throws SQLException
+	{
+		return m_tupleDesc.getOid(columnIndex);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected int getIntValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getInt(m_pointer, m_tupleDesc.getNativePointer(),
+				columnIndex, wasNull);
+		}
+	}
+
+	@Override // defined in ObjectResultSet
+	protected long getLongValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getLong(m_pointer, m_tupleDesc.getNativePointer(),
+				columnIndex, wasNull);
+		}
+	}
+
+	@Override // defined in ObjectResultSet
+	protected double getDoubleValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getDouble(m_pointer, m_tupleDesc.getNativePointer(),
+				columnIndex, wasNull);
+		}
+	}
+
+	@Override // defined in ObjectResultSet
+	protected boolean getBooleanValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		synchronized(Backend.THREADLOCK)
+		{
+			return _getBoolean(m_pointer, m_tupleDesc.getNativePointer(),
+				columnIndex, wasNull);
+		}
+	}
+
 	/**
 	 * Returns {@link ResultSet#CONCUR_READ_ONLY}.
 	 */
@@ -196,4 +252,20 @@ public class SingleRowReader extends SingleRowResultSet
 	private static native Object _getObject(
 		long pointer, long tupleDescPointer, int index, Class<?> type)
 	throws SQLException;
+
+	private static native int _getInt(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
+
+	private static native long _getLong(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
+
+	private static native double _getDouble(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
+
+	private static native boolean _getBoolean(
+		long pointer, long tupleDescPointer, int index, boolean[] wasNull)
+	throws SQLException;
 }
@@ -14,8 +14,10 @@
 package org.postgresql.pljava.jdbc;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Arrays;
 
+import org.postgresql.pljava.internal.Oid;
+import org.postgresql.pljava.internal.Relation;
 import org.postgresql.pljava.internal.Tuple;
 import org.postgresql.pljava.internal.TupleDesc;
 
@@ -23,12 +25,19 @@ import org.postgresql.pljava.internal.TupleDesc;
  * A single row, updateable ResultSet specially made for triggers. The
  * changes made to this ResultSet are remembered and converted to a
  * SPI_modify_tuple call prior to function return.
+ *<p>
+ * The changes are kept in an array of column indexes and a parallel array of
+ * values, allocated on the first change with room for every column of the
+ * row; a second change to the same column replaces the first.
  *
  * @author Thomas Hallgren
  */
 public class TriggerResultSet extends SingleRowResultSet
 {
-	private ArrayList m_tupleChanges;
+	private int[]    m_changedIndexes;
+	private Object[] m_changedValues;
+	private Object[] m_bridgedValues;
+	private int      m_changeCount;
 	private final TupleDesc m_tupleDesc;
 	private final Tuple     m_tuple;
 	private final boolean   m_readOnly;
@@ -48,7 +57,7 @@ public class TriggerResultSet extends SingleRowResultSet
 	public void cancelRowUpdates()
 	throws SQLException
 	{
-		m_tupleChanges = null;
+		this.clearChanges();
 	}
 
 	/**
@@ -58,7 +67,16 @@ public class TriggerResultSet extends SingleRowResultSet
 	public void close()
 	throws SQLException
 	{
-		m_tupleChanges = null;
+		this.clearChanges();
+	}
+
+	private void clearChanges()
+	{
+		if(m_changeCount != 0)
+		{
+			Arrays.fill(m_changedValues, 0, m_changeCount, null);
+			m_changeCount = 0;
+		}
 	}
 
 	/**
@@ -78,7 +96,7 @@ public class TriggerResultSet extends SingleRowResultSet
 	public boolean rowUpdated()
 	throws SQLException
 	{
-		return m_tupleChanges != null;
+		return m_changeCount != 0;
 	}
 
 	/**
@@ -91,11 +109,32 @@ public class TriggerResultSet extends SingleRowResultSet
 		if(m_readOnly)
 			throw new UnsupportedFeatureException("ResultSet is read-only");
 
-		if(m_tupleChanges == null)
-			m_tupleChanges = new ArrayList();
+		int count = m_changeCount;
+		int[] indexes = m_changedIndexes;
+		if(indexes == null)
+		{
+			int size = Math.max(m_tupleDesc.size(), 1);
+			indexes = m_changedIndexes = new int[size];
+			m_changedValues = new Object[size];
+		}
+
+		for(int idx = 0; idx < count; ++idx)
+		{
+			if(columnIndex == indexes[idx])
+			{
+				m_changedValues[idx] = x;
+				return;
+			}
+		}
 
-		m_tupleChanges.add(new Integer(columnIndex));
-		m_tupleChanges.add(x);
+		if(count == indexes.length)
+		{
+			indexes = m_changedIndexes = Arrays.copyOf(indexes, 2 * count);
+			m_changedValues = Arrays.copyOf(m_changedValues, 2 * count);
+		}
+		indexes[count] = columnIndex;
+		m_changedValues[count] = x;
+		m_changeCount = count + 1;
 	}
 
 	
@@ -111,26 +150,57 @@ public class TriggerResultSet extends SingleRowResultSet
 	 */
 	public Object[] getChangeIndexesAndValues()
 	{
-		ArrayList changes = m_tupleChanges;
-		if(changes == null)
+		int top = m_changeCount;
+		if(top == 0)
 			return null;
 
-		int top = changes.size();
-		if(changes.size() == 0)
+		int[] indexes = Arrays.copyOf(m_changedIndexes, top);
+		Object[] values = new Object[top];
+		this.bridgeValues(values, top);
+		return new Object[] { m_tuple, indexes, values };
+	}
+
+	/**
+	 * Apply the changes that have been made to the contained Tuple, returning
+	 * a modified copy, or null if no change has been made. The arrays holding
+	 * the changes are passed as they are, without trimming.
+	 *
+	 * @param relation The relation whose tuple descriptor describes the
+	 * contained Tuple.
+	 */
+	public Tuple getModifiedTuple(Relation relation)
+	throws SQLException
+	{
+		int top = m_changeCount;
+		if(top == 0)
 			return null;
 
-		top /= 2;
-		int[] indexes = new int[top];
-		Object[] values = new Object[top];
-		int vIdx = 0;
+		Object[] values = m_bridgedValues;
+		if(values == null || values.length < m_changedValues.length)
+			values = m_bridgedValues = new Object[m_changedValues.length];
+		this.bridgeValues(values, top);
+		try
+		{
+			return relation.modifyTuple(m_tuple, m_changedIndexes, values, top);
+		}
+		finally
+		{
+			Arrays.fill(values, 0, top, null);
+		}
+	}
+
+	/**
+	 * Copy the first <em>top</em> changed values into <em>values</em>, each
+	 * wrapped by {@link TypeBridge#wrap TypeBridge.wrap} if it has a bridge.
+	 */
+	private void bridgeValues(Object[] values, int top)
+	{
 		for(int idx = 0; idx < top; ++idx)
-		{	
-			indexes[idx] = ((Integer)changes.get(vIdx++)).intValue();
-			Object v = changes.get(vIdx++);
+		{
+			Object v = m_changedValues[idx];
 			TypeBridge<?>.Holder vAlt = TypeBridge.wrap(v);
 			values[idx] = null == vAlt ? v : vAlt;
 		}
-		return new Object[] { m_tuple, indexes, values };
 	}
 
 	/**
@@ -148,17 +218,56 @@ public class TriggerResultSet extends SingleRowResultSet
 	{
 		// Check if this value has been changed.
 		//
-		ArrayList changes = m_tupleChanges;
-		if(changes != null)
-		{	
-			int top = changes.size();
-			for(int idx = 0; idx < top; idx += 2)
-				if(columnIndex == ((Integer)changes.get(idx)).intValue())
-					return changes.get(idx + 1);
-		}
+		int top = m_changeCount;
+		for(int idx = 0; idx < top; ++idx)
+			if(columnIndex == m_changedIndexes[idx])
+				return m_changedValues[idx];
 		return m_tuple.getObject(this.getTupleDesc(), columnIndex, type);
 	}
 
+	/**
+	 * Returns the column's type from the {@link TupleDesc}, unless the value
+	 * has been changed, when it must be read as the object supplied.
+	 */
+	@Override // defined in ObjectResultSet
+	protected Oid getPrimitiveColumnType(int columnIndex)
+	throws SQLException
+	{
+		int top = m_changeCount;
+		for(int idx = 0; idx < top; ++idx)
+			if(columnIndex == m_changedIndexes[idx])
+				return null;
+		return m_tupleDesc.getOid(columnIndex);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected int getIntValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return m_tuple.getInt(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected long getLongValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return m_tuple.getLong(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected double getDoubleValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return m_tuple.getDouble(m_tupleDesc, columnIndex, wasNull);
+	}
+
+	@Override // defined in ObjectResultSet
+	protected boolean getBooleanValue(int columnIndex, boolean[] wasNull)
+	throws SQLException
+	{
+		return m_tuple.getBoolean(m_tupleDesc, columnIndex, wasNull);
+	}
+
 	@Override // defined in SingleRowResultSet
 	protected final TupleDesc getTupleDesc()
 	{
@@ -175,7 +284,7 @@ public class TriggerResultSet extends SingleRowResultSet
 	public boolean isClosed()
 		throws SQLException
 	{
-		return m_tupleChanges == null;
+		return m_changeCount == 0;
 	}
 
 	// ************************************************************
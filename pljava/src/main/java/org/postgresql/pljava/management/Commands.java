@@ -14,7 +14,6 @@ package org.postgresql.pljava.management;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -22,6 +21,8 @@ import java.nio.ByteBuffer;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharacterCodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLData;
@@ -33,6 +34,10 @@ import java.sql.SQLSyntaxErrorException;
 import java.sql.Statement;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
@@ -47,6 +52,8 @@ import org.postgresql.pljava.SessionManager;
 
 import org.postgresql.pljava.internal.AclId;
 import org.postgresql.pljava.internal.Backend;
+import org.postgresql.pljava.internal.ClassArchive;
+import org.postgresql.pljava.internal.ClassImageCache;
 import org.postgresql.pljava.internal.Oid;
 import org.postgresql.pljava.jdbc.SQLUtils;
 import org.postgresql.pljava.sqlj.Loader;
@@ -242,6 +249,24 @@ import static org.postgresql.pljava.annotation.Function.Security.DEFINER;
  * to the current setting of the search_path.</td>
  * </tr>
  * </table></blockquote>
+ * <h2>build_class_archive</h2>
+ * The build_class_archive function writes, under {@code pljava/cds} in the
+ * data directory, a jar and a class list for the classes on the classpath of
+ * the given schema, from which HotSpot can dump a class data sharing archive.
+ * It returns the VM options that will dump the archive when set as
+ * {@code pljava.vmoptions} in a new session; once the archive exists, it is
+ * used automatically by JVMs started for that database. Only a superuser may
+ * call this function.
+ * <h3>Usage</h3>
+ * <blockquote><code>SELECT sqlj.build_class_archive(&lt;schema&gt;);</code>
+ * </blockquote>
+ * <h3>Parameters</h3>
+ * <blockquote><table><caption>Parameters for sqlj.build_class_archive</caption>
+ * <tr>
+ * <td><b>schema</b></td>
+ * <td>The name of the schema whose classpath is to be archived</td>
+ * </tr>
+ * </table></blockquote>
  * 
  * @author Thomas Hallgren
  * @author Chapman Flack
@@ -257,11 +282,12 @@ import static org.postgresql.pljava.annotation.Function.Security.DEFINER;
  * In this (1.5.0) incarnation of the schema, jar_repository and jar_entry are
  * both indexed by SERIAL columns. The replace_jar operation is an UPDATE to
  * jar_repository (so the jar's id is preserved), but deletes and reinserts to
- * jar_entry (so ALL classes get new ids). This makes the entryId sufficient as
- * a class-cache token to ensure old cached versions are recognized as invalid
- * (although at the cost of doing so for *every single class* in a jar even if
- * many are unchanged). It is used that way in the cache-token construction in
- * o.p.p.sqlj.Loader, which could need to be revisited if this behavior changes.
+ * jar_entry any entry whose image has changed (so each changed class gets a
+ * new id), leaving the rows of unchanged entries alone. This makes the entryId
+ * sufficient as a class-cache token to ensure old cached versions are
+ * recognized as invalid. It is used that way in the cache-token construction
+ * in o.p.p.sqlj.Loader, which could need to be revisited if this behavior
+ * changes.
  */
 @SQLAction(install={
 "	CREATE TABLE sqlj.jar_repository(" +
@@ -343,21 +369,64 @@ public class Commands
 	public static void addClassImages(int jarId, InputStream urlStream, int sz)
 	throws SQLException
 	{
-		PreparedStatement stmt = null;
+		storeClassImages(jarId, urlStream, sz, null);
+	}
+
+	/**
+	 * Reads the jar found at the specified URL and brings the jar_entry rows
+	 * of an existing jar in line with it. An entry whose name and content are
+	 * unchanged keeps its row, and its entryId; only added, changed, and
+	 * removed entries are written.
+	 *
+	 * @param jarId The id of the jar being replaced
+	 * @param urlStream An InputStream (opened on what may have been a URL)
+	 * @param sz The expected size of the stream, as for
+	 * {@link #addClassImages(int,InputStream,int) addClassImages}.
+	 * @return Whether any entry was added, changed, or removed.
+	 * @throws SQLException
+	 */
+	public static boolean replaceClassImages(
+		int jarId, InputStream urlStream, int sz)
+	throws SQLException
+	{
+		StoredEntries stored = new StoredEntries(jarId);
+		try
+		{
+			storeClassImages(jarId, urlStream, sz, stored);
+			return stored.finish();
+		}
+		finally
+		{
+			stored.close();
+		}
+	}
+
+	/**
+	 * Stream the entries of a jar into the jar_entry table, in a single pass
+	 * over the jar and with a multi-row insert per {@link EntryBatch}, and
+	 * record the manifest and deployment descriptors.
+	 * @return The MD5 digest of each entry stored, by entry name, in the
+	 * order of the jar; the same digest PostgreSQL computes with
+	 * {@code md5(entryImage)}, so stored and new images can be compared
+	 * without fetching either.
+	 * @param stored The entries already stored for the jar, when it is being
+	 * replaced; an entry found unchanged there is not inserted again. Null
+	 * when the jar has no entries yet.
+	 */
+	static Map<String,byte[]> storeClassImages(
+		int jarId, InputStream urlStream, int sz, StoredEntries stored)
+	throws SQLException
+	{
 		PreparedStatement descIdFetchStmt = null;
 		PreparedStatement descIdStoreStmt = null;
 		ResultSet rs = null;
+		EntryBatch batch = new EntryBatch(jarId);
+		Map<String,byte[]> digests = new LinkedHashMap<String,byte[]>();
 
 		try
 		{
-			byte[] buf = new byte[1024];
-			ByteArrayOutputStream img = new ByteArrayOutputStream();
-			stmt = SQLUtils
-				.getDefaultConnection()
-				.prepareStatement(
-					"INSERT INTO sqlj.jar_entry(entryName, jarId, entryImage) VALUES(?, ?, ?)");
-
-			BufferedInputStream bis = new BufferedInputStream( urlStream);
+			BufferedInputStream bis =
+				new BufferedInputStream(urlStream, READ_BUFFER_SIZE);
 			String manifest = rawManifest( bis, sz);
 			JarInputStream jis = new JarInputStream(bis);
 			if(manifest != null)
@@ -391,20 +460,13 @@ public class Commands
 					continue;
 
 				String entryName = je.getName();
-
-				int nBytes;
-				img.reset();
-				while((nBytes = jis.read(buf)) > 0)
-					img.write(buf, 0, nBytes);
+				byte[] digest = batch.read(entryName, jis);
+				digests.put(entryName, digest);
 				jis.closeEntry();
-
-				stmt.setString(1, entryName);
-				stmt.setInt(2, jarId);
-				stmt.setBytes(3, img.toByteArray());
-				if(stmt.executeUpdate() != 1)
-					throw new SQLException(
-						"Jar entry insert did not insert 1 row");
+				if(stored == null || !stored.keep(entryName, digest))
+					batch.accept();
 			}
+			batch.flush();
 
 			Matcher ddr = ddrSection.matcher( null != manifest ? manifest : "");
 			Matcher cnt = mfCont.matcher( "");
@@ -451,7 +513,253 @@ public class Commands
 			SQLUtils.close(rs);
 			SQLUtils.close(descIdStoreStmt);
 			SQLUtils.close(descIdFetchStmt);
-			SQLUtils.close(stmt);
+			batch.close();
+		}
+		return digests;
+	}
+
+	/**
+	 * Size of the buffer between the jar source and the
+	 * {@code JarInputStream}, which otherwise reads it in small pieces.
+	 */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Jar entries on their way into the jar_entry table, inserted
+	 * {@value #BATCH_ROWS} at a time (or fewer, once {@value #BATCH_BYTES}
+	 * bytes of images are pending) by one multi-row {@code INSERT}. The images
+	 * are read directly into one buffer, reused from batch to batch, and
+	 * passed from there as streams, so no per-entry array is made.
+	 */
+	private static final class EntryBatch
+	{
+		static final int BATCH_ROWS = 64;
+
+		static final int BATCH_BYTES = 4 * 1024 * 1024;
+
+		private final int m_jarId;
+
+		private final MessageDigest m_md5;
+
+		private final String[] m_names = new String[BATCH_ROWS];
+
+		/*
+		 * Image i occupies m_offsets[i] up to m_offsets[i+1] in m_buffer;
+		 * m_offsets[m_count] is where the next image read will start.
+		 */
+		private final int[] m_offsets = new int[BATCH_ROWS + 1];
+
+		private byte[] m_buffer = new byte[READ_BUFFER_SIZE];
+
+		private int m_count;
+
+		private PreparedStatement m_fullStmt;
+
+		EntryBatch(int jarId) throws SQLException
+		{
+			m_jarId = jarId;
+			try
+			{
+				m_md5 = MessageDigest.getInstance("MD5");
+			}
+			catch(NoSuchAlgorithmException e)
+			{
+				throw new SQLException(
+					"No MD5 digest available for jar entries", "58030", e);
+			}
+		}
+
+		/**
+		 * Read the image of one entry, to the end of <em>is</em>, following
+		 * those already in the batch, and return its MD5 digest. The entry
+		 * is added to the batch only if {@link #accept} is then called;
+		 * otherwise the next {@code read} simply overwrites it.
+		 */
+		byte[] read(String name, InputStream is)
+		throws IOException, SQLException
+		{
+			if(m_offsets[m_count] >= BATCH_BYTES)
+				flush();
+			int start = m_offsets[m_count];
+			int pos = start;
+			for(;;)
+			{
+				if(pos == m_buffer.length)
+				{
+					if(pos > Integer.MAX_VALUE / 2)
+						throw new IOException(
+							"Jar entry " + name + " is too large");
+					m_buffer = Arrays.copyOf(m_buffer, 2 * pos);
+				}
+				int got = is.read(m_buffer, pos, m_buffer.length - pos);
+				if(got < 0)
+					break;
+				pos += got;
+			}
+			m_names[m_count] = name;
+			m_offsets[m_count + 1] = pos;
+			m_md5.update(m_buffer, start, pos - start);
+			return m_md5.digest();
+		}
+
+		/**
+		 * Add the entry last read to the batch, inserting the batch if that
+		 * fills it.
+		 */
+		void accept() throws SQLException
+		{
+			if(++m_count == BATCH_ROWS)
+				flush();
+		}
+
+		/**
+		 * Insert the entries in the batch, if any, and empty it.
+		 */
+		void flush() throws SQLException
+		{
+			if(m_count == 0)
+				return;
+			PreparedStatement stmt;
+			if(m_count == BATCH_ROWS)
+			{
+				if(m_fullStmt == null)
+					m_fullStmt = prepare(BATCH_ROWS);
+				stmt = m_fullStmt;
+			}
+			else
+				stmt = prepare(m_count);
+			try
+			{
+				int param = 1;
+				for(int i = 0; i < m_count; ++i)
+				{
+					int offset = m_offsets[i];
+					int length = m_offsets[i + 1] - offset;
+					stmt.setString(param++, m_names[i]);
+					stmt.setInt(param++, m_jarId);
+					stmt.setBinaryStream(param++,
+						new ByteArrayInputStream(m_buffer, offset, length),
+						length);
+				}
+				if(stmt.executeUpdate() != m_count)
+					throw new SQLException("Jar entry insert did not insert "
+						+ m_count + " rows");
+			}
+			finally
+			{
+				if(stmt != m_fullStmt)
+					SQLUtils.close(stmt);
+			}
+			Arrays.fill(m_names, null);
+			m_count = 0;
+		}
+
+		void close()
+		{
+			SQLUtils.close(m_fullStmt);
+			m_fullStmt = null;
+		}
+
+		private static PreparedStatement prepare(int rows) throws SQLException
+		{
+			StringBuilder sb = new StringBuilder(
+				"INSERT INTO sqlj.jar_entry(entryName, jarId, entryImage) " +
+				"VALUES (?, ?, ?)");
+			for(int i = 1; i < rows; ++i)
+				sb.append(", (?, ?, ?)");
+			return SQLUtils.getDefaultConnection().prepareStatement(
+				sb.toString());
+		}
+	}
+
+	/**
+	 * The entries a jar has in the jar_entry table as a replace_jar begins,
+	 * by name, with their entryIds and the MD5 digests of their images as
+	 * computed by PostgreSQL. Each entry of the new jar is checked against
+	 * them with {@link #keep keep}, and {@link #finish finish} then deletes
+	 * those the new jar does not have.
+	 */
+	private static final class StoredEntries
+	{
+		private final Map<String,Integer> m_ids =
+			new HashMap<String,Integer>();
+
+		private final Map<String,byte[]> m_digests =
+			new HashMap<String,byte[]>();
+
+		private PreparedStatement m_deleteStmt;
+
+		private boolean m_changed;
+
+		StoredEntries(int jarId) throws SQLException
+		{
+			try(PreparedStatement stmt = SQLUtils.getDefaultConnection()
+				.prepareStatement(
+					"SELECT entryId, entryName," +
+					" pg_catalog.decode(pg_catalog.md5(entryImage), 'hex')" +
+					" FROM sqlj.jar_entry WHERE jarId OPERATOR(pg_catalog.=) ?"))
+			{
+				stmt.setInt(1, jarId);
+				try(ResultSet rs = stmt.executeQuery())
+				{
+					while(rs.next())
+					{
+						String name = rs.getString(2);
+						m_ids.put(name, rs.getInt(1));
+						m_digests.put(name, rs.getBytes(3));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Whether an entry of the new jar is stored already with the same
+		 * content, and can be kept as it is. If an entry by that name is
+		 * stored with different content, it is deleted here, so the new one
+		 * can be inserted under a new entryId.
+		 */
+		boolean keep(String name, byte[] digest) throws SQLException
+		{
+			Integer entryId = m_ids.remove(name);
+			if(entryId != null
+				&& MessageDigest.isEqual(digest, m_digests.get(name)))
+				return true;
+			if(entryId != null)
+				delete(entryId);
+			m_changed = true;
+			return false;
+		}
+
+		/**
+		 * Delete the stored entries not found in the new jar.
+		 * @return Whether any entry was added, changed, or removed.
+		 */
+		boolean finish() throws SQLException
+		{
+			for(Integer entryId : m_ids.values())
+			{
+				delete(entryId);
+				m_changed = true;
+			}
+			m_ids.clear();
+			return m_changed;
+		}
+
+		void close()
+		{
+			SQLUtils.close(m_deleteStmt);
+			m_deleteStmt = null;
+		}
+
+		private void delete(int entryId) throws SQLException
+		{
+			if(m_deleteStmt == null)
+				m_deleteStmt = SQLUtils.getDefaultConnection().prepareStatement(
+					"DELETE FROM sqlj.jar_entry " +
+					"WHERE entryId OPERATOR(pg_catalog.=) ?");
+			m_deleteStmt.setInt(1, entryId);
+			if(m_deleteStmt.executeUpdate() != 1)
+				throw new SQLException("Jar entry delete did not delete 1 row");
 		}
 	}
 
@@ -622,6 +930,23 @@ public class Commands
 		}
 	}
 
+	/**
+	 * Write the inputs for a class data sharing archive of the classes on
+	 * the classpath of the schema named {@code schemaName}. This method is
+	 * exposed in SQL as {@code sqlj.build_class_archive(VARCHAR)}.
+	 * 
+	 * @param schemaName Name of the schema whose classpath is archived.
+	 * @return The VM options that will dump the archive in a new session.
+	 * @throws SQLException if the caller is not a superuser, or the files
+	 *             cannot be written.
+	 */
+	@Function(schema="sqlj", name="build_class_archive", security=DEFINER)
+	public static String buildClassArchive(String schemaName)
+	throws SQLException
+	{
+		return ClassArchive.build(schemaName);
+	}
+
 	public static String getCurrentSchema() throws SQLException
 	{
 		Session session = SessionManager.current();
@@ -720,6 +1045,7 @@ public class Commands
 		{
 			SQLUtils.close(stmt);
 		}
+		ClassImageCache.invalidate(jarId);
 		Loader.clearSchemaLoaders();
 	}
 
@@ -1150,6 +1476,8 @@ public class Commands
 		if(jarId < 0)
 			throw new SQLException("Unable to obtain id of '" + jarName + "'");
 
+		ClassImageCache.invalidate(jarId);
+
 		if(image == null)
 			Backend.addClassImages(jarId, urlString);
 		else
@@ -1200,8 +1528,13 @@ public class Commands
 			SQLUtils.close(stmt);
 		}
 
+		/*
+		 * The deployment descriptors are recorded again as the new jar is
+		 * read. The entries themselves are replaced only where changed.
+		 */
 		stmt = SQLUtils.getDefaultConnection().prepareStatement(
-			"DELETE FROM sqlj.jar_entry WHERE jarId OPERATOR(pg_catalog.=) ?");
+			"DELETE FROM sqlj.jar_descriptor " +
+			"WHERE jarId OPERATOR(pg_catalog.=) ?");
 		try
 		{
 			stmt.setInt(1, jarId);
@@ -1211,14 +1544,19 @@ public class Commands
 		{
 			SQLUtils.close(stmt);
 		}
+		boolean changed;
 		if(image == null)
-			Backend.addClassImages(jarId, urlString);
+			changed = Backend.replaceClassImages(jarId, urlString);
 		else
 		{
 			InputStream imageStream = new ByteArrayInputStream(image);
-			addClassImages(jarId, imageStream, image.length);
+			changed = replaceClassImages(jarId, imageStream, image.length);
+		}
+		if(changed)
+		{
+			ClassImageCache.invalidate(jarId);
+			Loader.clearSchemaLoaders(jarId);
 		}
-		Loader.clearSchemaLoaders();
 		if(redeploy)
 			deployInstall(jarId, jarName);
 	}
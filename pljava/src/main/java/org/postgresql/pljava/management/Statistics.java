@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.management;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Iterator;
+
+import org.postgresql.pljava.ResultSetProvider;
+import org.postgresql.pljava.internal.ExecutionPlan;
+import org.postgresql.pljava.jdbc.SPIConnection;
+
+import org.postgresql.pljava.annotation.Function;
+import org.postgresql.pljava.annotation.SQLAction;
+import org.postgresql.pljava.annotation.SQLActions;
+
+/**
+ * Functions in the {@code sqlj} schema that report on PL/Java's internal
+ * caches in the current backend.
+ * <h1>SQL functions</h1>
+ * <h2>plan_cache_counters</h2>
+ * Returns one row of cumulative counters for the cache of prepared plans
+ * that is sized by {@code pljava.statement_cache_size}.
+ * <h3>Usage</h3>
+ * <blockquote><code>SELECT * FROM sqlj.plan_cache_counters();</code>
+ * </blockquote>
+ * <h3>Result columns</h3>
+ * <blockquote><table><caption>Columns of sqlj.plan_cache_counters</caption>
+ * <tr>
+ * <td valign="top"><b>hits</b></td>
+ * <td>Statements prepared by reusing a cached plan</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>misses</b></td>
+ * <td>Statements that needed a new {@code SPI_prepare}</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>evictions</b></td>
+ * <td>Plans discarded to keep the cache within its capacity</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>size</b></td>
+ * <td>Plans currently cached and not in use</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>capacity</b></td>
+ * <td>Maximum number of plans the cache will hold</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>segments</b></td>
+ * <td>Number of independently locked segments the cache is divided into</td>
+ * </tr>
+ * </table></blockquote>
+ * <h2>plan_cache_stats</h2>
+ * Returns one row for each plan currently held in the prepared plan cache.
+ * Plans in use by statements that have not been closed are not shown.
+ * <h3>Usage</h3>
+ * <blockquote><code>SELECT * FROM sqlj.plan_cache_stats();</code>
+ * </blockquote>
+ * <h3>Result columns</h3>
+ * <blockquote><table><caption>Columns of sqlj.plan_cache_stats</caption>
+ * <tr>
+ * <td valign="top"><b>statement</b></td>
+ * <td>The statement text as passed to {@code SPI_prepare}</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>argtypes</b></td>
+ * <td>The type oids of the statement's parameters, or NULL if the
+ * statement was prepared without parameter types</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>hits</b></td>
+ * <td>Times the plan was reused from the cache since it was prepared</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>prepare_ns</b></td>
+ * <td>Time taken to prepare the plan, in nanoseconds</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>last_used</b></td>
+ * <td>When the plan was last returned to the cache</td>
+ * </tr>
+ * </table></blockquote>
+ * A plan with few hits but a recent {@code last_used} belongs to a statement
+ * that is repeatedly prepared and evicted, suggesting that
+ * {@code pljava.statement_cache_size} is too small for the workload.
+ * <h2>sql_translation_counters</h2>
+ * Returns one row of cumulative counters for the cache of JDBC statement
+ * texts already translated (with {@code ?} parameters replaced by
+ * {@code $n}) for PostgreSQL, which holds as many statements as the plan
+ * cache.
+ * <h3>Usage</h3>
+ * <blockquote><code>SELECT * FROM sqlj.sql_translation_counters();</code>
+ * </blockquote>
+ * <h3>Result columns</h3>
+ * <blockquote><table><caption>Columns of sqlj.sql_translation_counters
+ * </caption>
+ * <tr>
+ * <td valign="top"><b>hits</b></td>
+ * <td>Statements whose translation was found in the cache</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>misses</b></td>
+ * <td>Statements that had to be translated</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>size</b></td>
+ * <td>Translations currently cached</td>
+ * </tr>
+ * <tr>
+ * <td valign="top"><b>capacity</b></td>
+ * <td>Maximum number of translations the cache will hold</td>
+ * </tr>
+ * </table></blockquote>
+ */
+@SQLActions({
+@SQLAction(provides="plan_cache_counters type", install={
+"	CREATE TYPE sqlj.plan_cache_counters AS (" +
+"		hits        pg_catalog.INT8," +
+"		misses      pg_catalog.INT8," +
+"		evictions   pg_catalog.INT8," +
+"		size        pg_catalog.INT4," +
+"		capacity    pg_catalog.INT4," +
+"		segments    pg_catalog.INT4" +
+"	)",
+"	COMMENT ON TYPE sqlj.plan_cache_counters IS" +
+"	'Cumulative counters for the PL/Java prepared plan cache.'"
+}, remove={
+"	DROP TYPE sqlj.plan_cache_counters"
+}),
+@SQLAction(provides="plan_cache_stats type", install={
+"	CREATE TYPE sqlj.plan_cache_stats AS (" +
+"		statement   pg_catalog.TEXT," +
+"		argtypes    pg_catalog.OID[]," +
+"		hits        pg_catalog.INT8," +
+"		prepare_ns  pg_catalog.INT8," +
+"		last_used   pg_catalog.TIMESTAMPTZ" +
+"	)",
+"	COMMENT ON TYPE sqlj.plan_cache_stats IS" +
+"	'Usage of one plan held in the PL/Java prepared plan cache.'"
+}, remove={
+"	DROP TYPE sqlj.plan_cache_stats"
+}),
+@SQLAction(provides="sql_translation_counters type", install={
+"	CREATE TYPE sqlj.sql_translation_counters AS (" +
+"		hits        pg_catalog.INT8," +
+"		misses      pg_catalog.INT8," +
+"		size        pg_catalog.INT4," +
+"		capacity    pg_catalog.INT4" +
+"	)",
+"	COMMENT ON TYPE sqlj.sql_translation_counters IS" +
+"	'Cumulative counters for the PL/Java JDBC statement translation cache.'"
+}, remove={
+"	DROP TYPE sqlj.sql_translation_counters"
+})
+})
+public class Statistics
+{
+	private Statistics()
+	{
+	}
+
+	/**
+	 * Report the prepared plan cache counters for this backend. This method
+	 * is exposed in SQL as {@code sqlj.plan_cache_counters()}.
+	 * @param receiver The single-row result to populate.
+	 * @return true, as there is always a row to report.
+	 * @throws SQLException
+	 */
+	@Function(schema="sqlj", name="plan_cache_counters",
+		type="sqlj.plan_cache_counters", requires="plan_cache_counters type")
+	public static boolean planCacheCounters(ResultSet receiver)
+	throws SQLException
+	{
+		ExecutionPlan.CacheStatistics cs = ExecutionPlan.getCacheStatistics();
+		receiver.updateLong(1, cs.getHits());
+		receiver.updateLong(2, cs.getMisses());
+		receiver.updateLong(3, cs.getEvictions());
+		receiver.updateInt(4, cs.getSize());
+		receiver.updateInt(5, cs.getCapacity());
+		receiver.updateInt(6, cs.getSegments());
+		return true;
+	}
+
+	/**
+	 * Report the statement translation cache counters for this backend. This
+	 * method is exposed in SQL as {@code sqlj.sql_translation_counters()}.
+	 * @param receiver The single-row result to populate.
+	 * @return true, as there is always a row to report.
+	 * @throws SQLException
+	 */
+	@Function(schema="sqlj", name="sql_translation_counters",
+		type="sqlj.sql_translation_counters",
+		requires="sql_translation_counters type")
+	public static boolean sqlTranslationCounters(ResultSet receiver)
+	throws SQLException
+	{
+		SPIConnection.TranslationCacheStatistics ts =
+			SPIConnection.getTranslationCacheStatistics();
+		receiver.updateLong(1, ts.getHits());
+		receiver.updateLong(2, ts.getMisses());
+		receiver.updateInt(3, ts.getSize());
+		receiver.updateInt(4, ts.getCapacity());
+		return true;
+	}
+
+	/**
+	 * Report each plan held in the prepared plan cache for this backend.
+	 * This method is exposed in SQL as {@code sqlj.plan_cache_stats()}.
+	 * @return A provider of one row per cached plan.
+	 * @throws SQLException
+	 */
+	@Function(schema="sqlj", name="plan_cache_stats",
+		type="sqlj.plan_cache_stats", requires="plan_cache_stats type")
+	public static ResultSetProvider planCacheStats() throws SQLException
+	{
+		return new PlanCacheStats(
+			ExecutionPlan.getCachedPlanStatistics().iterator());
+	}
+
+	private static class PlanCacheStats implements ResultSetProvider
+	{
+		private final Iterator<ExecutionPlan.PlanStatistics> m_stats;
+
+		PlanCacheStats(Iterator<ExecutionPlan.PlanStatistics> stats)
+		{
+			m_stats = stats;
+		}
+
+		@Override
+		public boolean assignRowValues(ResultSet receiver, int currentRow)
+		throws SQLException
+		{
+			if(!m_stats.hasNext())
+				return false;
+
+			ExecutionPlan.PlanStatistics ps = m_stats.next();
+			receiver.updateString(1, ps.getStatement());
+			receiver.updateObject(2, ps.getArgTypes());
+			receiver.updateLong(3, ps.getHits());
+			receiver.updateLong(4, ps.getPrepareNanos());
+			receiver.updateTimestamp(5, new Timestamp(ps.getLastUsed()));
+			return true;
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+}
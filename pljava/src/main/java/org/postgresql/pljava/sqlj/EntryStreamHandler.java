@@ -17,6 +17,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+import org.postgresql.pljava.jdbc.SPIStatementPool;
 import org.postgresql.pljava.jdbc.SQLUtils;
 
 /**
@@ -72,7 +73,7 @@ class EntryStreamHandler extends URLStreamHandler
 	    	try
 			{
 
-				stmt = SQLUtils.getDefaultConnection().prepareStatement(
+				stmt = SPIStatementPool.getDefault().prepareStatement(
 					"SELECT entryName, entryImage FROM sqlj.jar_entry " +
 					"WHERE entryId OPERATOR(pg_catalog.=) ?");
 				stmt.setInt(1, m_entryId);
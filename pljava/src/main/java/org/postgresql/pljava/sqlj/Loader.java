@@ -18,22 +18,33 @@ import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.postgresql.pljava.internal.Backend;
+import org.postgresql.pljava.internal.ClassImageCache;
 import org.postgresql.pljava.internal.Oid;
+import org.postgresql.pljava.jdbc.SPIStatementPool;
 import org.postgresql.pljava.jdbc.SQLUtils;
 
 /*
@@ -95,9 +106,25 @@ public class Loader extends ClassLoader
 	}
 	private static final String PUBLIC_SCHEMA = "public";
 
-	private static final Map s_schemaLoaders = new HashMap();
+	/*
+	 * A Loader can load classes for more than one thread at a time; its state
+	 * is fixed when it is made, apart from the JVM's own per-class locking.
+	 */
+	static
+	{
+		registerAsParallelCapable();
+	}
+
+	/*
+	 * The loaders and type maps by (lower-cased) schema name. Either may be
+	 * read or filled from any thread; a loader or map made by two threads at
+	 * once is kept only for the first to finish.
+	 */
+	private static final ConcurrentMap<String,ClassLoader> s_schemaLoaders =
+		new ConcurrentHashMap<String,ClassLoader>();
 
-	private static final Map s_typeMap = new HashMap();
+	private static final ConcurrentMap<String,TypeMap> s_typeMap =
+		new ConcurrentHashMap<String,TypeMap>();
 
 	/**
 	 * Removes all cached schema loaders, functions, and type maps. This
@@ -110,6 +137,80 @@ public class Loader extends ClassLoader
 		s_schemaLoaders.clear();
 		s_typeMap.clear();
 		Backend.clearFunctionCache();
+		try
+		{
+			SPIStatementPool.clearDefault();
+		}
+		catch(SQLException e)
+		{
+			Logger.getAnonymousLogger().log(Level.WARNING,
+				"Failed to clear statement pool", e);
+		}
+	}
+
+	/**
+	 * Removes the cached schema loaders whose class path includes the jar
+	 * with id <em>jarId</em>, with the functions and type maps that depend on
+	 * them. A schema that has no class path of its own shares the loader of
+	 * the public schema, and is cleared along with it. Loaders for other
+	 * schemas, and the functions they loaded, are kept. This method is called
+	 * by {@code sqlj.replace_jar}. It is not intended to be called from user
+	 * code.
+	 */
+	public static void clearSchemaLoaders(int jarId) throws SQLException
+	{
+		Set<ClassLoader> stale = Collections.newSetFromMap(
+			new IdentityHashMap<ClassLoader,Boolean>());
+		try(PreparedStatement stmt = SQLUtils.getDefaultConnection()
+			.prepareStatement(
+				"SELECT schemaName FROM sqlj.classpath_entry " +
+				"WHERE jarId OPERATOR(pg_catalog.=) ?"))
+		{
+			stmt.setInt(1, jarId);
+			try(ResultSet rs = stmt.executeQuery())
+			{
+				while(rs.next())
+				{
+					ClassLoader loader = s_schemaLoaders.get(rs.getString(1));
+					if(loader != null)
+						stale.add(loader);
+				}
+			}
+		}
+		if(stale.isEmpty())
+			return;
+
+		Set<String> schemas = new HashSet<String>();
+		Iterator<Map.Entry<String,ClassLoader>> loaders =
+			s_schemaLoaders.entrySet().iterator();
+		while(loaders.hasNext())
+		{
+			Map.Entry<String,ClassLoader> e = loaders.next();
+			if(stale.contains(e.getValue()))
+			{
+				schemas.add(e.getKey());
+				loaders.remove();
+			}
+		}
+		for(Iterator<String> it = s_typeMap.keySet().iterator(); it.hasNext();)
+		{
+			String schema = it.next();
+			if(schema == null || schema.length() == 0)
+				schema = PUBLIC_SCHEMA;
+			if(schemas.contains(schema.toLowerCase()))
+				it.remove();
+		}
+
+		Backend.clearFunctionCache(stale.toArray(new ClassLoader[stale.size()]));
+		try
+		{
+			SPIStatementPool.clearDefault();
+		}
+		catch(SQLException e)
+		{
+			Logger.getAnonymousLogger().log(Level.WARNING,
+				"Failed to clear statement pool", e);
+		}
 	}
 
 	/**
@@ -154,11 +255,66 @@ public class Loader extends ClassLoader
 		else
 			schemaName = schemaName.toLowerCase();
 
-		ClassLoader loader = (ClassLoader)s_schemaLoaders.get(schemaName);
+		ClassLoader loader = s_schemaLoaders.get(schemaName);
 		if(loader != null)
 			return loader;
 
 		Map classImages = new HashMap();
+		Map<Integer,ClassImageCache.Jar> cachedJars = null;
+		PrefetchedImages prefetched = null;
+		if("on".equals(Backend.getConfigOption("pljava.prefetch_classes")))
+			prefetched = prefetchEntries(schemaName, classImages);
+		else
+		{
+			if(ClassImageCache.isEnabled())
+				cachedJars = new HashMap<>();
+			listEntries(schemaName, classImages, cachedJars);
+		}
+
+		ClassLoader parent = ClassLoader.getSystemClassLoader();
+		if(classImages.size() == 0)
+			//
+			// No classpath defined for the schema. Default to
+			// classpath of public schema or to the system classloader if the
+			// request already is for the public schema.
+			//
+			loader = schemaName.equals(PUBLIC_SCHEMA) ? parent : getSchemaLoader(PUBLIC_SCHEMA);
+		else
+			loader = new Loader(classImages, cachedJars, prefetched, parent);
+
+		ClassLoader raced = s_schemaLoaders.putIfAbsent(schemaName, loader);
+		return raced != null ? raced : loader;
+	}
+
+	/**
+	 * Record one jar entry in <em>classImages</em>, ahead of any entry of the
+	 * same name already there (entries must be added lowest priority first).
+	 */
+	private static void addEntry(Map classImages, int entryId, String entryName)
+	{
+		int[] oldEntry = (int[])classImages.get(entryName);
+		if(oldEntry == null)
+			classImages.put(entryName, new int[] { entryId });
+		else
+		{
+			int last = oldEntry.length;
+			int[] newEntry = new int[last + 1];
+			newEntry[0] = entryId;
+			System.arraycopy(oldEntry, 0, newEntry, 1, last);
+			classImages.put(entryName, newEntry);
+		}
+	}
+
+	/**
+	 * List the entries of each jar on the schema's classpath, one query per
+	 * jar, leaving the images to be fetched as classes are loaded. If
+	 * <em>cachedJars</em> is not null, also populate it with a
+	 * {@link ClassImageCache} handle for each class entry.
+	 */
+	private static void listEntries(String schemaName, Map classImages,
+		Map<Integer,ClassImageCache.Jar> cachedJars)
+	throws SQLException
+	{
 		Connection conn = SQLUtils.getDefaultConnection();
 		PreparedStatement outer = null;
 		PreparedStatement inner = null;
@@ -177,7 +333,7 @@ public class Loader extends ClassLoader
 
 			inner = conn.prepareStatement(
 				"SELECT entryId, entryName FROM sqlj.jar_entry " +
-				"WHERE jarId OPERATOR(pg_catalog.=) ?");
+				"WHERE jarId OPERATOR(pg_catalog.=) ? ORDER BY entryId");
 
 			outer.unwrap(SPIReadOnlyControl.class).clearReadOnly();
 			inner.unwrap(SPIReadOnlyControl.class).clearReadOnly();
@@ -187,31 +343,42 @@ public class Loader extends ClassLoader
 			{
 				while(rs.next())
 				{
-					inner.setInt(1, rs.getInt(1));
+					int jarId = rs.getInt(1);
+					inner.setInt(1, jarId);
 					ResultSet rs2 = inner.executeQuery();
+					ClassImageCache.TokenBuilder token = null;
+					ArrayList<Integer> classEntryIds = null;
+					if(cachedJars != null)
+					{
+						token = new ClassImageCache.TokenBuilder();
+						classEntryIds = new ArrayList<>();
+					}
 					try
 					{
 						while(rs2.next())
 						{
 							int entryId = rs2.getInt(1);
 							String entryName = rs2.getString(2);
-							int[] oldEntry = (int[])classImages.get(entryName);
-							if(oldEntry == null)
-								classImages.put(entryName, new int[] { entryId });
-							else
+							if(token != null)
 							{
-								int last = oldEntry.length;
-								int[] newEntry = new int[last + 1];
-								newEntry[0] = entryId;
-								System.arraycopy(oldEntry, 0, newEntry, 1, last);
-								classImages.put(entryName, newEntry);
+								token.add(entryId, entryName);
+								if(entryName.endsWith(".class"))
+									classEntryIds.add(entryId);
 							}
+							addEntry(classImages, entryId, entryName);
 						}
 					}
 					finally
 					{
 						SQLUtils.close(rs2);
 					}
+					if(token != null)
+					{
+						ClassImageCache.Jar jar =
+							ClassImageCache.forJar(jarId, token.finish());
+						for(Integer entryId : classEntryIds)
+							cachedJars.put(entryId, jar);
+					}
 				}
 			}
 			finally
@@ -224,20 +391,46 @@ public class Loader extends ClassLoader
 			SQLUtils.close(outer);
 			SQLUtils.close(inner);
 		}
+	}
 
-		ClassLoader parent = ClassLoader.getSystemClassLoader();
-		if(classImages.size() == 0)
-			//
-			// No classpath defined for the schema. Default to
-			// classpath of public schema or to the system classloader if the
-			// request already is for the public schema.
+	/**
+	 * List the entries of every jar on the schema's classpath, and fetch the
+	 * images of all the classes among them, in a single query.
+	 */
+	private static PrefetchedImages prefetchEntries(
+		String schemaName, Map classImages)
+	throws SQLException
+	{
+		PrefetchedImages prefetched = new PrefetchedImages();
+		try(PreparedStatement stmt = SQLUtils.getDefaultConnection()
+			.prepareStatement(
+				"SELECT e.entryId, e.entryName," +
+				" CASE WHEN e.entryName LIKE '%.class' THEN e.entryImage END" +
+				" FROM" +
+				"  sqlj.classpath_entry c" +
+				"  INNER JOIN sqlj.jar_entry e" +
+				"  ON c.jarId OPERATOR(pg_catalog.=) e.jarId" +
+				" WHERE c.schemaName OPERATOR(pg_catalog.=) ?" +
+				" ORDER BY c.ordinal DESC"))
+		{
+			// Read the entries so that the one with highest prio is read last.
 			//
-			loader = schemaName.equals(PUBLIC_SCHEMA) ? parent : getSchemaLoader(PUBLIC_SCHEMA);
-		else
-			loader = new Loader(classImages, parent);
-
-		s_schemaLoaders.put(schemaName, loader);
-		return loader;
+			stmt.unwrap(SPIReadOnlyControl.class).clearReadOnly();
+			stmt.setString(1, schemaName);
+			try(ResultSet rs = stmt.executeQuery())
+			{
+				while(rs.next())
+				{
+					int entryId = rs.getInt(1);
+					addEntry(classImages, entryId, rs.getString(2));
+					byte[] img = rs.getBytes(3);
+					if(img != null)
+						prefetched.add(entryId, img);
+				}
+			}
+		}
+		prefetched.seal();
+		return prefetched;
 	}
 
 	/**
@@ -247,23 +440,20 @@ public class Loader extends ClassLoader
 	 * should never call this method.
 	 *
 	 * @param schema The schema
-	 * @return The Map, possibly empty but never <code>null</code>.
+	 * @return The map, possibly empty but never <code>null</code>.
 	 */
-	public static Map getTypeMap(final String schema) throws SQLException
+	public static TypeMap getTypeMap(final String schema) throws SQLException
 	{
-		Map typesForSchema = (Map)s_typeMap.get(schema);
+		TypeMap typesForSchema = s_typeMap.get(schema);
 		if(typesForSchema != null)
 			return typesForSchema;
 
-		s_logger.finer("Creating typeMappings for schema " + schema);
-		typesForSchema = new HashMap()
-		{
-			public Object get(Object key)
-			{
-				s_logger.finer("Obtaining type mapping for OID " + key + " for schema " + schema);
-				return super.get(key);
-			}
-		};
+		boolean finer = s_logger.isLoggable(Level.FINER);
+		if(finer)
+			s_logger.finer("Creating typeMappings for schema " + schema);
+		int count = 0;
+		int[] oids = new int[8];
+		Class<?>[] classes = new Class<?>[8];
 		ClassLoader loader = Loader.getSchemaLoader(schema);
 		Statement stmt = SQLUtils.getDefaultConnection().createStatement();
 		stmt.unwrap(SPIReadOnlyControl.class).clearReadOnly();
@@ -282,18 +472,27 @@ public class Loader extends ClassLoader
 						throw new SQLException("Class " + javaClassName + " does not implement java.sql.SQLData");
 					
 					Oid typeOid = Oid.forTypeName(sqlName);
-					typesForSchema.put(typeOid, cls);
-					s_logger.finer("Adding type mapping for OID " + typeOid + " -> class " + cls.getName() + " for schema " + schema);
+					if(count == oids.length)
+					{
+						oids = Arrays.copyOf(oids, 2 * count);
+						classes = Arrays.copyOf(classes, 2 * count);
+					}
+					oids[count] = typeOid.intValue();
+					classes[count++] = cls;
+					if(finer)
+						s_logger.finer("Adding type mapping for OID " + typeOid +
+							" -> class " + cls.getName() +
+							" for schema " + schema);
 				}
 				catch(ClassNotFoundException e)
 				{
 					// Ignore, type is not know to this schema and that is ok
 				}
 			}
-			if(typesForSchema.isEmpty())
-				typesForSchema = Collections.EMPTY_MAP;
-			s_typeMap.put(schema, typesForSchema);
-			return typesForSchema;
+			typesForSchema = count == 0
+				? TypeMap.EMPTY : new TypeMap(oids, classes, count);
+			TypeMap raced = s_typeMap.putIfAbsent(schema, typesForSchema);
+			return raced != null ? raced : typesForSchema;
 		}
 		finally
 		{
@@ -321,15 +520,32 @@ public class Loader extends ClassLoader
 
 	private final Map m_entries;
 
+	/**
+	 * The {@link ClassImageCache} handle for the jar containing each class
+	 * entry, by entryId, or null if the cache is not in use.
+	 */
+	private final Map<Integer,ClassImageCache.Jar> m_cachedJars;
+
+	/**
+	 * The class images fetched in bulk when the loader was created, or null
+	 * if {@code pljava.prefetch_classes} was off.
+	 */
+	private final PrefetchedImages m_prefetched;
+
 	/**
 	 * Create a new Loader.
 	 * @param entries
+	 * @param cachedJars
+	 * @param prefetched
 	 * @param parent
 	 */
-	Loader(Map entries, ClassLoader parent)
+	Loader(Map entries, Map<Integer,ClassImageCache.Jar> cachedJars,
+		PrefetchedImages prefetched, ClassLoader parent)
 	{
 		super(parent);
 		m_entries = entries;
+		m_cachedJars = cachedJars;
+		m_prefetched = prefetched;
 		m_j9Helper = ifJ9getHelper(); // null if not under OpenJ9 with sharing
 	}
 
@@ -362,11 +578,26 @@ public class Loader extends ClassLoader
 			ResultSet rs = null;
 			try
 			{
-				// This code relies heavily on the fact that the connection
-				// is a singleton and that the prepared statement will live
-				// for the duration of the loader.
+				ByteBuffer cached = null;
+				if(m_prefetched != null)
+					cached = m_prefetched.getImage(entryId[0]);
+				else if(m_cachedJars != null)
+				{
+					ClassImageCache.Jar jar = m_cachedJars.get(entryId[0]);
+					if(jar != null)
+						cached = jar.getImage(entryId[0]);
+				}
+				if(cached != null)
+				{
+					Class<?> cls = this.defineClass(name, cached, null);
+					ifJ9storeSharedClass(ifJ9token, cls);
+					return cls;
+				}
+
+				// The statement comes from the session's pool, so its plan
+				// is reused from one class to the next.
 				//
-				stmt = SQLUtils.getDefaultConnection().prepareStatement(
+				stmt = SPIStatementPool.getDefault().prepareStatement(
 					"SELECT entryImage FROM sqlj.jar_entry " +
 					"WHERE entryId OPERATOR(pg_catalog.=) ?");
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.sqlj;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Class images fetched in bulk for one {@link Loader}, held off the Java heap
+ * in a single direct buffer with a sorted index of entry ids.
+ *<p>
+ * Used when {@code pljava.prefetch_classes} is on: {@code getSchemaLoader}
+ * reads every class image on the schema's classpath in the same scan that
+ * lists the entries, and {@code findClass} defines classes from here instead
+ * of querying {@code sqlj.jar_entry} once per class.
+ */
+class PrefetchedImages
+{
+	private ByteBuffer m_data = ByteBuffer.allocateDirect(64 * 1024);
+
+	private int[] m_entryIds = new int[64];
+
+	private int[] m_offsets = new int[64];
+
+	private int[] m_lengths = new int[64];
+
+	private int m_count;
+
+	private boolean m_sorted = true;
+
+	/**
+	 * Append the image for one entry.
+	 */
+	void add(int entryId, byte[] image)
+	{
+		if(m_count == m_entryIds.length)
+		{
+			int newLength = m_count << 1;
+			m_entryIds = Arrays.copyOf(m_entryIds, newLength);
+			m_offsets = Arrays.copyOf(m_offsets, newLength);
+			m_lengths = Arrays.copyOf(m_lengths, newLength);
+		}
+		if(m_data.remaining() < image.length)
+		{
+			int newCapacity = m_data.capacity() << 1;
+			while(newCapacity - m_data.position() < image.length)
+				newCapacity <<= 1;
+			ByteBuffer bigger = ByteBuffer.allocateDirect(newCapacity);
+			m_data.flip();
+			bigger.put(m_data);
+			m_data = bigger;
+		}
+		if(m_count > 0 && entryId < m_entryIds[m_count - 1])
+			m_sorted = false;
+		m_entryIds[m_count] = entryId;
+		m_offsets[m_count] = m_data.position();
+		m_lengths[m_count] = image.length;
+		m_data.put(image);
+		++ m_count;
+	}
+
+	/**
+	 * Finish loading; the index is sorted for lookup by entry id.
+	 */
+	void seal()
+	{
+		if(m_sorted)
+			return;
+		long[] keyed = new long[m_count];
+		for(int i = 0; i < m_count; ++i)
+			keyed[i] = ((long)m_entryIds[i] << 32) | i;
+		Arrays.sort(keyed);
+		int[] ids = new int[m_count];
+		int[] offsets = new int[m_count];
+		int[] lengths = new int[m_count];
+		for(int i = 0; i < m_count; ++i)
+		{
+			int from = (int)keyed[i];
+			ids[i] = m_entryIds[from];
+			offsets[i] = m_offsets[from];
+			lengths[i] = m_lengths[from];
+		}
+		m_entryIds = ids;
+		m_offsets = offsets;
+		m_lengths = lengths;
+		m_sorted = true;
+	}
+
+	/**
+	 * Return a read-only view of the image for an entry, or null if it was
+	 * not prefetched.
+	 */
+	ByteBuffer getImage(int entryId)
+	{
+		int i = Arrays.binarySearch(m_entryIds, 0, m_count, entryId);
+		if(i < 0)
+			return null;
+		ByteBuffer b = m_data.asReadOnlyBuffer();
+		b.limit(m_offsets[i] + m_lengths[i]).position(m_offsets[i]);
+		return b.slice();
+	}
+}
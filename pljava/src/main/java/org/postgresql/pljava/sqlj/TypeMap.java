@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.sqlj;
+
+import java.util.Arrays;
+
+/**
+ * The Java classes mapped to SQL types for one schema, by type OID, as
+ * returned by {@link Loader#getTypeMap Loader.getTypeMap}.
+ *<p>
+ * A {@code TypeMap} does not change once made; a change to the mappings is
+ * seen when the schema's loader is cleared and a new map made. It can
+ * therefore be read from any thread without locking. The OIDs are held in a
+ * sorted {@code int} array, so a lookup neither boxes its key nor allocates.
+ * It is not intended to be used from user code.
+ */
+public final class TypeMap
+{
+	static final TypeMap EMPTY = new TypeMap(new int[0], new Class<?>[0], 0);
+
+	private final int[] m_oids;
+
+	private final Class<?>[] m_classes;
+
+	/**
+	 * Make a map of the first <em>count</em> OIDs and classes in the given
+	 * arrays, which are not retained. Where an OID appears more than once,
+	 * the last class given for it is kept.
+	 */
+	TypeMap(int[] oids, Class<?>[] classes, int count)
+	{
+		long[] keyed = new long[count];
+		for(int i = 0; i < count; ++i)
+			keyed[i] = ((long)oids[i] << 32) | i;
+		Arrays.sort(keyed);
+
+		int n = 0;
+		int[] sortedOids = new int[count];
+		Class<?>[] sortedClasses = new Class<?>[count];
+		for(int i = 0; i < count; ++i)
+		{
+			int from = (int)keyed[i];
+			if(n > 0 && sortedOids[n - 1] == oids[from])
+				--n;
+			sortedOids[n] = oids[from];
+			sortedClasses[n] = classes[from];
+			++n;
+		}
+		m_oids = Arrays.copyOf(sortedOids, n);
+		m_classes = Arrays.copyOf(sortedClasses, n);
+	}
+
+	/**
+	 * Return the class mapped to the type with the given OID, or null if
+	 * there is none.
+	 */
+	public Class<?> classFor(int oid)
+	{
+		int i = Arrays.binarySearch(m_oids, oid);
+		return i < 0 ? null : m_classes[i];
+	}
+
+	/**
+	 * Return the number of types mapped.
+	 */
+	public int size()
+	{
+		return m_oids.length;
+	}
+}
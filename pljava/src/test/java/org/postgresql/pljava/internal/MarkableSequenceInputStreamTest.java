@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+public class MarkableSequenceInputStreamTest extends TestCase
+{
+	public MarkableSequenceInputStreamTest(String name) { super(name); }
+
+	private static InputStream bytes(String s) throws Exception
+	{
+		return new ByteArrayInputStream(s.getBytes("US-ASCII"));
+	}
+
+	/*
+	 * Reading up to the read limit cancels the mark. That must leave the
+	 * stream positioned as before, not fail with NoSuchElementException.
+	 */
+	public void testReadPastLimit() throws Exception
+	{
+		MarkableSequenceInputStream s =
+			new MarkableSequenceInputStream(bytes("ab"), bytes("cd"));
+		s.mark(3);
+		assertEquals('a', s.read());
+		assertEquals('b', s.read());
+		assertEquals('c', s.read());
+		assertEquals('d', s.read());
+		assertEquals(-1, s.read());
+		s.close();
+	}
+
+	public void testReadArrayPastLimit() throws Exception
+	{
+		MarkableSequenceInputStream s =
+			new MarkableSequenceInputStream(bytes("abc"), bytes("def"));
+		byte[] b = new byte[8];
+		s.mark(2);
+		assertEquals(3, s.read(b, 0, 8));
+		assertEquals(3, s.read(b, 3, 5));
+		assertEquals("abcdef", new String(b, 0, 6, "US-ASCII"));
+		assertEquals(-1, s.read(b, 0, 8));
+		s.close();
+	}
+
+	public void testSkipPastLimit() throws Exception
+	{
+		MarkableSequenceInputStream s =
+			new MarkableSequenceInputStream(bytes("abc"), bytes("def"));
+		s.mark(2);
+		assertEquals(4, s.skip(4));
+		assertEquals('e', s.read());
+		s.close();
+	}
+
+	public void testResetWithinLimit() throws Exception
+	{
+		MarkableSequenceInputStream s =
+			new MarkableSequenceInputStream(bytes("ab"), bytes("cd"));
+		assertEquals('a', s.read());
+		s.mark(10);
+		assertEquals('b', s.read());
+		assertEquals('c', s.read());
+		s.reset();
+		assertEquals('b', s.read());
+		assertEquals('c', s.read());
+		assertEquals('d', s.read());
+		assertEquals(-1, s.read());
+		s.close();
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018 Tada AB and other contributors, as listed below.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the The BSD 3-Clause License
+ * which accompanies this distribution, and is available at
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Contributors:
+ *   Tada AB
+ */
+package org.postgresql.pljava.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SegmentedLRUCacheTest extends TestCase
+{
+	public SegmentedLRUCacheTest(String name) { super(name); }
+
+	/*
+	 * Remembers, in order, the values passed to evicted.
+	 */
+	static class Recording extends SegmentedLRUCache<Integer,String>
+	{
+		final List<String> evicted = new ArrayList<>();
+
+		Recording(int cacheSize)
+		{
+			super(cacheSize);
+		}
+
+		@Override
+		protected void evicted(String value)
+		{
+			evicted.add(value);
+		}
+	}
+
+	/*
+	 * Segments are doubled while each keeps at least MIN_SEGMENT_CAPACITY
+	 * entries, up to MAX_SEGMENTS, and the capacity is rounded up to a
+	 * multiple of the segment count.
+	 */
+	public void testSegmentSizing() throws Exception
+	{
+		SegmentedLRUCache<Integer,String> c;
+
+		c = new SegmentedLRUCache<>(8);
+		assertEquals(1, c.segmentCount());
+		assertEquals(8, c.capacity());
+
+		c = new SegmentedLRUCache<>(100);
+		assertEquals(8, c.segmentCount());
+		assertEquals(104, c.capacity());
+
+		c = new SegmentedLRUCache<>(1000);
+		assertEquals(SegmentedLRUCache.MAX_SEGMENTS, c.segmentCount());
+		assertEquals(1008, c.capacity());
+	}
+
+	/*
+	 * Two segments of eight, and small Integer keys hash to themselves, so
+	 * even keys share one segment and odd keys the other. Filling the even
+	 * segment past capacity evicts from it alone.
+	 */
+	public void testSegmentSelection() throws Exception
+	{
+		Recording c = new Recording(16);
+		assertEquals(2, c.segmentCount());
+
+		for(int k = 1; k < 16; k += 2)
+			c.put(k, "odd" + k);
+		for(int k = 0; k < 18; k += 2)
+			c.put(k, "even" + k);
+
+		assertEquals(1, c.evicted.size());
+		assertEquals("even0", c.evicted.get(0));
+		assertEquals(16, c.size());
+		for(int k = 1; k < 16; k += 2)
+			assertEquals("odd" + k, c.get(k));
+	}
+
+	/*
+	 * A get makes an entry most recently used, so the eldest untouched entry
+	 * is the one evicted.
+	 */
+	public void testAccessOrderEviction() throws Exception
+	{
+		Recording c = new Recording(8);
+		for(int k = 0; k < 8; ++k)
+			c.put(k, "v" + k);
+		assertEquals("v0", c.get(0));
+
+		c.put(8, "v8");
+		assertEquals(1, c.evicted.size());
+		assertEquals("v1", c.evicted.get(0));
+		assertNull(c.get(1));
+		assertEquals("v0", c.get(0));
+
+		c.put(9, "v9");
+		assertEquals("v2", c.evicted.get(1));
+	}
+
+	/*
+	 * evicted is called with no segment monitor held: another thread can use
+	 * the same segment from inside it without blocking.
+	 */
+	public void testEvictedOutsideLock() throws Exception
+	{
+		final String[] seen = new String[1];
+		final SegmentedLRUCache<Integer,String> c =
+			new SegmentedLRUCache<Integer,String>(8)
+			{
+				@Override
+				protected void evicted(String value)
+				{
+					Thread t = new Thread()
+					{
+						@Override
+						public void run()
+						{
+							seen[0] = get(7);
+						}
+					};
+					t.start();
+					try
+					{
+						t.join(10000);
+					}
+					catch(InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+					assertFalse("blocked on segment monitor", t.isAlive());
+				}
+			};
+
+		for(int k = 0; k < 9; ++k)
+			c.put(k, "v" + k);
+		assertEquals("v7", seen[0]);
+	}
+
+	public void testCounters() throws Exception
+	{
+		SegmentedLRUCache<Integer,String> c = new SegmentedLRUCache<>(8);
+		for(int k = 0; k < 10; ++k)
+			c.put(k, "v" + k);
+		assertEquals(2L, c.getEvictions());
+		assertEquals(0L, c.getHits());
+		assertEquals(0L, c.getMisses());
+
+		assertEquals("v9", c.get(9));
+		assertNull(c.get(0));
+		assertEquals("v5", c.remove(5));
+		assertNull(c.remove(5));
+		assertEquals(2L, c.getHits());
+		assertEquals(2L, c.getMisses());
+		assertEquals(7, c.size());
+
+		assertNull(c.put(5, "w5"));
+		assertEquals("w5", c.put(5, "x5"));
+		assertEquals(2L, c.getEvictions());
+	}
+}